@@ -4,11 +4,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -79,6 +79,15 @@ public class Shell {
             return errorGobbler;
         }
 
+        public Map<String, String> getEnvironmentVariables() {
+            Map<String, String> env = new LinkedHashMap<>();
+            for (String envp : envps) {
+                int pos = envp.indexOf('=');
+                env.put(envp.substring(0, pos), envp.substring(pos+1));
+            }
+            return env;
+        }
+
         @Override
         public String toString() {
             return String.format("[output=%s, error=%s, folder=%s, envp=%s]", toString(outputGobbler), toString(errorGobbler), workingFolder, envps);
@@ -104,6 +113,7 @@ public class Shell {
 
         private final Process process;
         private final CountDownLatch ioLatch;
+        private volatile boolean timedOut;
 
         public Task(Process process) {
             this.process = process;
@@ -114,22 +124,48 @@ public class Shell {
             return this.waitFor(DEFAULT_TIMEOUT_IN_SECONDS);
         }
 
+        /**
+         * Waits for the process to complete and its output to be consumed, all
+         * within the given time: when that expires, or the waiting thread is
+         * interrupted, the process is killed.
+         *
+         * @return the exit value, or -1 when the process timed out
+         */
         public int waitFor(long timeoutInSeconds) throws IOException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutInSeconds);
             try {
-                ioLatch.await(timeoutInSeconds, TimeUnit.SECONDS);
-                return process.waitFor(timeoutInSeconds, TimeUnit.SECONDS) ? process.exitValue() : -1;
+                if (!process.waitFor(remaining(deadline), TimeUnit.NANOSECONDS)) {
+                    log.warn("Process still running after {} seconds, killing it", timeoutInSeconds);
+                    timedOut = true;
+                    destroy();
+                    return -1;
+                }
+
+                if (!ioLatch.await(remaining(deadline), TimeUnit.NANOSECONDS))
+                    log.debug("Output of the process not fully consumed in {} seconds", timeoutInSeconds);
+
+                return process.exitValue();
             } catch (InterruptedException e) {
+                destroy();
                 Thread.currentThread().interrupt();
                 throw new IOException("Operation interrupted!", e);
             }
         }
 
+        private static long remaining(long deadline) {
+            return Math.max(0, deadline - System.nanoTime());
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
         public int exitValue() {
             return process.exitValue();
         }
 
         public void destroy() {
-            process.destroy();
+            process.destroyForcibly();
         }
     };
 
@@ -146,15 +182,8 @@ public class Shell {
         }
     };
 
-    private final ExecutorService threadPool;
-
-    public Shell() {
-        this(Executors.newCachedThreadPool());
-    }
-
-    public Shell(ExecutorService threadPool) {
-        this.threadPool = threadPool;
-    }
+    // a thread per stream, ending with it: no idle threads are left behind
+    private static final ThreadFactory IO_THREADS = new NamedThreadFactory("meterian-shell-io-");
 
     public Task exec(String... commands) throws IOException {
         return this.exec(commands, new Options());
@@ -171,8 +200,8 @@ public class Shell {
             process = Runtime.getRuntime().exec(commands, options.envp(), options.workingFolder);
 
         Task task =  new Task(process);
-        threadPool.execute(new StreamGobbler(process.getInputStream(), "STDOUT", options.outputGobbler, task.ioLatch));
-        threadPool.execute(new StreamGobbler(process.getErrorStream(), "STDERR", options.errorGobbler, task.ioLatch));
+        IO_THREADS.newThread(new StreamGobbler(process.getInputStream(), "STDOUT", options.outputGobbler, task.ioLatch)).start();
+        IO_THREADS.newThread(new StreamGobbler(process.getErrorStream(), "STDERR", options.errorGobbler, task.ioLatch)).start();
         return task;
     }
 }
@@ -77,6 +77,8 @@ public class AutoFixFeature {
 
                 localGitClient.checkoutBranch(targetBranchToWorkOn);
             }
+        } catch (InterruptedException ex) {
+            throw ex;
         } catch (Exception ex) {
             log.error(String.format("Checking for branch or running the Meterian client was not successful due to: %s", ex.getMessage()), ex);
             throw new RuntimeException(ex);
@@ -111,7 +113,7 @@ public class AutoFixFeature {
         }
     }
 
-    private boolean failedClientExecution() {
+    private boolean failedClientExecution() throws InterruptedException {
         return clientRunner.execute() != 0;
     }
 }
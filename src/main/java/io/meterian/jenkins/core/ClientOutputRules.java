@@ -0,0 +1,276 @@
+package io.meterian.jenkins.core;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.meterian.jenkins.core.Meterian.Result;
+
+/**
+ * The {@link OutputScanner.Rule}s extracting the outcome of an analysis from
+ * the output of the Meterian client.
+ */
+public class ClientOutputRules {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientOutputRules.class);
+
+    public static final int MAX_ERRORS = 20;
+    public static final int MAX_ADVISORIES = 500;
+
+    public static List<OutputScanner.Rule> defaults() {
+        return Arrays.asList(
+                new ReportUrlRule(),
+                new ScoreRule(),
+                new OutcomeRule(),
+                new ErrorRule(),
+                new AdvisoryRule());
+    }
+
+    /**
+     * The report URL, i.e. "Full report available at: https://www.meterian.com/projects/?pid=...&branch=..."
+     */
+    public static class ReportUrlRule implements OutputScanner.Rule {
+        @Override
+        public List<String> keywords() {
+            return Collections.singletonList("pid=");
+        }
+
+        @Override
+        public void matched(String keyword, String line, int start, Result result) {
+            String token = tokenAround(line, start);
+            if (!token.startsWith("http") || token.indexOf("meterian.") == -1)
+                return;
+
+            UUID pid = null;
+            String branch = null;
+            try {
+                URI url = new URI(token);
+                String query = url.getRawQuery();
+                if (query == null)
+                    return;
+
+                for (String param : query.split("&")) {
+                    int pos = param.indexOf('=');
+                    if (pos == -1)
+                        continue;
+
+                    String name = param.substring(0, pos);
+                    String value = URLDecoder.decode(param.substring(pos + 1), "UTF-8");
+                    if ("branch".equalsIgnoreCase(name))
+                        branch = value;
+                    else if ("pid".equalsIgnoreCase(name))
+                        pid = UUID.fromString(value);
+                }
+
+                if (branch != null && pid != null) {
+                    result.projectBranch = branch;
+                    result.projectUUID = pid;
+                    result.reportUrl = url;
+                    log.info("Meterian project info: {}", result);
+                }
+            } catch (Exception ex) {
+                log.warn("Unexpected report url {}", token, ex);
+            }
+        }
+    }
+
+    /**
+     * The scores, i.e. "- security:   90    (minimum: 90)"
+     */
+    public static class ScoreRule implements OutputScanner.Rule {
+        private static final String MINIMUM = "minimum:";
+
+        @Override
+        public List<String> keywords() {
+            return Arrays.asList("- security:", "- stability:", "- licensing:");
+        }
+
+        @Override
+        public void matched(String keyword, String line, int start, Result result) {
+            int from = start + keyword.length();
+            Integer score = integerAt(line, from);
+            if (score == null)
+                return;
+
+            String check = keyword.substring(2, keyword.length() - 1);
+            result.scores.put(check, score);
+
+            int minimum = line.indexOf(MINIMUM, from);
+            if (minimum != -1) {
+                Integer value = integerAt(line, minimum + MINIMUM.length());
+                if (value != null)
+                    result.minimumScores.put(check, value);
+            }
+        }
+    }
+
+    /**
+     * The outcome, i.e. "Build unsuccessful!" and "Failed checks: [security]"
+     */
+    public static class OutcomeRule implements OutputScanner.Rule {
+        private static final String UNSUCCESSFUL = "Build unsuccessful!";
+        private static final String FAILED_CHECKS = "Failed checks: [";
+
+        @Override
+        public List<String> keywords() {
+            return Arrays.asList(UNSUCCESSFUL, FAILED_CHECKS);
+        }
+
+        @Override
+        public void matched(String keyword, String line, int start, Result result) {
+            if (keyword == UNSUCCESSFUL) {
+                result.buildUnsuccessful = true;
+                return;
+            }
+
+            int from = start + keyword.length();
+            int end = line.indexOf(']', from);
+            if (end == -1)
+                return;
+
+            for (String check : line.substring(from, end).split(",")) {
+                String name = check.trim();
+                if (!name.isEmpty() && !result.failedChecks.contains(name))
+                    result.failedChecks.add(name);
+            }
+        }
+    }
+
+    /**
+     * Errors reported by the client
+     */
+    public static class ErrorRule implements OutputScanner.Rule {
+        @Override
+        public List<String> keywords() {
+            return Arrays.asList("ERROR", "Error:", "Exception:");
+        }
+
+        @Override
+        public void matched(String keyword, String line, int start, Result result) {
+            int size = result.errors.size();
+            if (size >= MAX_ERRORS || (size > 0 && result.errors.get(size - 1) == line))
+                return;
+
+            result.errors.add(line);
+        }
+    }
+
+    /**
+     * Advisory identifiers, i.e. "CVE-2019-12384" or "GHSA-6fpp-rgj9-8rwc",
+     * with the severity found on the same line, if any
+     */
+    public static class AdvisoryRule implements OutputScanner.Rule {
+        @Override
+        public List<String> keywords() {
+            return Arrays.asList("CVE-", "GHSA-");
+        }
+
+        @Override
+        public void matched(String keyword, String line, int start, Result result) {
+            String id = advisoryIdAt(keyword, line, start);
+            if (id == null)
+                return;
+
+            Severity severity = severityIn(line);
+            String known = result.advisories.get(id);
+            if (known == null && result.advisories.size() >= MAX_ADVISORIES)
+                return;
+            if (known == null || severity != null)
+                result.advisories.put(id, severity == null ? null : severity.name());
+        }
+    }
+
+    /**
+     * Stops the analysis at the first advisory at or above a given severity
+     */
+    public static class FailFastRule implements OutputScanner.Rule {
+        private final Severity threshold;
+        private final Runnable stop;
+
+        public FailFastRule(Severity threshold, Runnable stop) {
+            this.threshold = threshold;
+            this.stop = stop;
+        }
+
+        @Override
+        public List<String> keywords() {
+            return Arrays.asList("CVE-", "GHSA-");
+        }
+
+        @Override
+        public void matched(String keyword, String line, int start, Result result) {
+            if (result.blockingFinding != null)
+                return;
+
+            String id = advisoryIdAt(keyword, line, start);
+            Severity severity = (id == null) ? null : severityIn(line);
+            if (severity == null || !severity.isAtLeast(threshold))
+                return;
+
+            result.blockingFinding = id + " (" + severity + "): " + line.trim();
+            log.info("Blocking finding {}, stopping the analysis", result.blockingFinding);
+            stop.run();
+        }
+    }
+
+    private static String advisoryIdAt(String keyword, String line, int start) {
+        if (start > 0 && isIdentifierChar(line.charAt(start - 1)))
+            return null;
+
+        int end = start + keyword.length();
+        while (end < line.length() && isIdentifierChar(line.charAt(end)))
+            end++;
+        if (end == start + keyword.length() || line.charAt(end - 1) == '-')
+            return null;
+
+        return line.substring(start, end);
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-';
+    }
+
+    private static Severity severityIn(String line) {
+        Severity[] severities = Severity.values();
+        for (int s = severities.length - 1; s >= 0; s--) {
+            String severity = severities[s].name();
+            int len = severity.length();
+            for (int i = 0; i + len <= line.length(); i++) {
+                if (line.regionMatches(true, i, severity, 0, len)
+                        && (i == 0 || !Character.isLetter(line.charAt(i - 1)))
+                        && (i + len == line.length() || !Character.isLetter(line.charAt(i + len))))
+                    return severities[s];
+            }
+        }
+        return null;
+    }
+
+    private static String tokenAround(String line, int pos) {
+        int start = pos;
+        while (start > 0 && !Character.isWhitespace(line.charAt(start - 1)))
+            start--;
+        int end = pos;
+        while (end < line.length() && !Character.isWhitespace(line.charAt(end)))
+            end++;
+        return line.substring(start, end);
+    }
+
+    private static Integer integerAt(String line, int pos) {
+        int i = pos;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i)))
+            i++;
+        int value = 0;
+        int digits = 0;
+        while (i < line.length() && line.charAt(i) >= '0' && line.charAt(i) <= '9' && digits < 9) {
+            value = value * 10 + (line.charAt(i++) - '0');
+            digits++;
+        }
+        return digits == 0 ? null : value;
+    }
+}
@@ -0,0 +1,117 @@
+package io.meterian.jenkins.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.meterian.jenkins.io.CgroupLimits;
+import io.meterian.jenkins.io.JavaVersion;
+
+/**
+ * Sizes the JVM of a client for the node it runs on, sharing the memory and
+ * the CPUs of the node, or of its container, among the clients running there.
+ *
+ * Left alone, a JVM in a container may size its heap on the memory of the
+ * host and get killed, or use all the CPUs of the host. Each client gets half
+ * of its share of the memory as heap, and its share of the CPUs; the serial
+ * collector is used when the client is too small for a parallel one to help.
+ * Options already in the configured JVM args are never overridden, nor are
+ * options passed to a JVM too old to know them.
+ */
+public class ClientSizing {
+
+    private static final long MB = 1024L * 1024;
+
+    static final long MIN_HEAP_IN_BYTES = 256 * MB;
+    static final long MAX_HEAP_IN_BYTES = 8192 * MB;
+
+    // below this the JVM itself would not consider the machine a server
+    static final long PARALLEL_GC_MIN_HEAP_IN_BYTES = 1792 * MB;
+
+    private final CgroupLimits limits;
+    private final int concurrentClients;
+    private final long heapInBytes;
+    private final int cpus;
+    private final List<String> jvmArgs;
+
+    private ClientSizing(CgroupLimits limits, int concurrentClients, long heapInBytes, int cpus, List<String> jvmArgs) {
+        this.limits = limits;
+        this.concurrentClients = concurrentClients;
+        this.heapInBytes = heapInBytes;
+        this.cpus = cpus;
+        this.jvmArgs = jvmArgs;
+    }
+
+    /**
+     * Sizes a client running together with the given number of clients,
+     * itself included, skipping the options set by the configured args and
+     * those the given JVM does not support
+     */
+    public static ClientSizing of(CgroupLimits limits, int concurrentClients, List<String> configuredArgs, JavaVersion java) {
+        int clients = Math.max(1, concurrentClients);
+
+        long heap = CgroupLimits.UNKNOWN;
+        if (limits.getMemoryInBytes() != CgroupLimits.UNKNOWN) {
+            heap = limits.getMemoryInBytes() / clients / 2;
+            heap = Math.max(MIN_HEAP_IN_BYTES, Math.min(MAX_HEAP_IN_BYTES, heap)) / MB * MB;
+        }
+
+        int cpus = -1;
+        if (limits.getCpus() != CgroupLimits.UNKNOWN)
+            cpus = Math.max(1, (int) Math.floor(limits.getCpus() / clients));
+
+        List<String> args = new ArrayList<>();
+        if (heap != CgroupLimits.UNKNOWN && !hasOption(configuredArgs, "-Xmx", "-XX:MaxRAMPercentage", "-XX:MaxRAMFraction"))
+            args.add("-Xmx" + (heap / MB) + "m");
+        if (cpus > 0 && java.supportsActiveProcessorCount() && !hasOption(configuredArgs, "-XX:ActiveProcessorCount"))
+            args.add("-XX:ActiveProcessorCount=" + cpus);
+        if ((heap != CgroupLimits.UNKNOWN || cpus > 0) && !hasGc(configuredArgs)) {
+            boolean parallel = cpus >= 2 && heap >= PARALLEL_GC_MIN_HEAP_IN_BYTES;
+            args.add(parallel ? "-XX:+UseParallelGC" : "-XX:+UseSerialGC");
+        }
+
+        return new ClientSizing(limits, clients, heap, cpus, Collections.unmodifiableList(args));
+    }
+
+    public List<String> getJvmArgs() {
+        return jvmArgs;
+    }
+
+    public long getHeapInBytes() {
+        return heapInBytes;
+    }
+
+    public int getCpus() {
+        return cpus;
+    }
+
+    public int getConcurrentClients() {
+        return concurrentClients;
+    }
+
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        text.append(limits.isContainerLimited() ? "container with " : "node with ");
+        text.append(limits.getMemoryInBytes() == CgroupLimits.UNKNOWN ? "unknown memory" : limits.getMemoryInBytes() / MB + " MB");
+        text.append(" and ");
+        text.append(limits.getCpus() == CgroupLimits.UNKNOWN ? "unknown" : String.format("%.1f", limits.getCpus())).append(" CPUs, ");
+        text.append(concurrentClients).append(concurrentClients == 1 ? " analysis" : " analyses").append(" running: ");
+        text.append(String.join(" ", jvmArgs.isEmpty() ? Collections.singletonList("no options") : jvmArgs));
+        return text.toString();
+    }
+
+    private static boolean hasOption(List<String> args, String... prefixes) {
+        for (String arg : args)
+            for (String prefix : prefixes)
+                if (arg.startsWith(prefix))
+                    return true;
+        return false;
+    }
+
+    private static boolean hasGc(List<String> args) {
+        for (String arg : args)
+            if (arg.startsWith("-XX:+Use") && arg.endsWith("GC"))
+                return true;
+        return false;
+    }
+}
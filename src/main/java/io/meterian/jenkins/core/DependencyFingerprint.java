@@ -0,0 +1,289 @@
+package io.meterian.jenkins.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import io.meterian.jenkins.io.ClientDigest;
+
+/**
+ * A digest of the dependencies declared by all the manifests and lockfiles of
+ * a workspace, that does not change when only formatting, comments or the
+ * order of elements change.
+ *
+ * Each manifest is reduced to a canonical form: XML files are streamed with
+ * StAX and their elements sorted, JSON files are streamed and their keys
+ * sorted, other files are trimmed of blank and comment lines. The canonical
+ * forms are then digested in the order of their paths.
+ */
+public class DependencyFingerprint {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char SEPARATOR = '\u0001';
+
+    private static final Set<String> SKIPPED_FOLDERS = new HashSet<>(Arrays.asList(
+            ".git", ".svn", ".hg", ".gradle", ".idea", ".mvn", "node_modules", "bower_components",
+            "target", "build", "out", "bin", "obj", "dist", "vendor", "__pycache__", ".venv", "venv", ".tox"));
+
+    // elements of a pom.xml that do not affect the dependencies
+    private static final Set<String> POM_IGNORED = new HashSet<>(Arrays.asList(
+            "name", "description", "url", "inceptionYear", "organization", "licenses", "developers",
+            "contributors", "mailingLists", "scm", "issueManagement", "ciManagement", "distributionManagement",
+            "reporting"));
+
+    // keys of a package.json that declare dependencies
+    private static final Set<String> PACKAGE_JSON_KEYS = new HashSet<>(Arrays.asList(
+            "dependencies", "devDependencies", "peerDependencies", "optionalDependencies",
+            "bundledDependencies", "bundleDependencies", "resolutions", "overrides", "workspaces"));
+
+    // line oriented files where each line is an independent declaration
+    private static final Set<String> UNORDERED_LINES = new HashSet<>(Arrays.asList("go.sum"));
+
+    private final ManifestDetector detector;
+
+    public DependencyFingerprint() {
+        this(ManifestDetector.defaults());
+    }
+
+    public DependencyFingerprint(ManifestDetector detector) {
+        this.detector = detector;
+    }
+
+    /**
+     * Returns the fingerprint of the manifests under the given folder, as an
+     * hex string, or null when there are no manifests at all
+     */
+    public String of(File root) throws IOException {
+        List<Path> manifests = find(root.toPath());
+        if (manifests.isEmpty())
+            return null;
+
+        MessageDigest digest = ClientDigest.newDigest();
+        for (Path manifest : manifests) {
+            String relative = root.toPath().relativize(manifest).toString().replace('\\', '/');
+            digest.update(relative.getBytes(UTF_8));
+            digest.update((byte) SEPARATOR);
+            try (InputStream input = Files.newInputStream(manifest)) {
+                digest.update(canonical(manifest.getFileName().toString(), input).getBytes(UTF_8));
+            }
+            digest.update((byte) 0);
+        }
+
+        return ClientDigest.hex(digest.digest());
+    }
+
+    /**
+     * The canonical form of a manifest, given its file name
+     */
+    public String canonical(String name, InputStream input) throws IOException {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".json"))
+            return json(name, input);
+        if (lower.equals("pom.xml"))
+            return xml(input, POM_IGNORED);
+        if (lower.endsWith(".xml") || lower.endsWith("proj") || lower.endsWith(".config") || lower.endsWith(".props"))
+            return xml(input, Collections.<String>emptySet());
+
+        return lines(input, UNORDERED_LINES.contains(name) || (lower.startsWith("requirements") && lower.endsWith(".txt")));
+    }
+
+    private List<Path> find(Path root) throws IOException {
+        List<Path> manifests = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && SKIPPED_FOLDERS.contains(dir.getFileName().toString()))
+                    return FileVisitResult.SKIP_SUBTREE;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && detector.isManifest(file.getFileName().toString()))
+                    manifests.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        Collections.sort(manifests);
+        return manifests;
+    }
+
+    private static String xml(InputStream input, Set<String> ignoredAtTopLevel) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        List<XmlElement> stack = new ArrayList<>();
+        XmlElement root = new XmlElement("");
+        stack.add(root);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            try {
+                int skipping = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (skipping > 0) {
+                        if (event == XMLStreamConstants.START_ELEMENT)
+                            skipping++;
+                        else if (event == XMLStreamConstants.END_ELEMENT)
+                            skipping--;
+                        continue;
+                    }
+
+                    switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        String name = reader.getLocalName();
+                        if (stack.size() == 2 && ignoredAtTopLevel.contains(name)) {
+                            skipping = 1;
+                            break;
+                        }
+                        XmlElement element = new XmlElement(name);
+                        for (int i = 0; i < reader.getAttributeCount(); i++)
+                            element.children.add("@" + reader.getAttributeLocalName(i) + "=" + reader.getAttributeValue(i).trim());
+                        stack.add(element);
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        stack.get(stack.size() - 1).text.append(reader.getText());
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        XmlElement closed = stack.remove(stack.size() - 1);
+                        stack.get(stack.size() - 1).children.add(closed.render());
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Unable to read the manifest: " + ex.getMessage(), ex);
+        }
+
+        return root.render();
+    }
+
+    private static class XmlElement {
+        final String name;
+        final List<String> children = new ArrayList<>();
+        final StringBuilder text = new StringBuilder();
+
+        XmlElement(String name) {
+            this.name = name;
+        }
+
+        String render() {
+            String value = text.toString().trim();
+            if (children.isEmpty())
+                return name + "=" + value;
+
+            Collections.sort(children);
+            StringBuilder rendered = new StringBuilder(name).append('{');
+            if (!value.isEmpty())
+                rendered.append(value).append(SEPARATOR);
+            for (String child : children)
+                rendered.append(child).append(SEPARATOR);
+            return rendered.append('}').toString();
+        }
+    }
+
+    private static String json(String name, InputStream input) throws IOException {
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(input, UTF_8));
+            reader.setLenient(true);
+            Object value = readJson(reader);
+            if ("package.json".equals(name) && value instanceof Map) {
+                ((Map<?, ?>) value).keySet().retainAll(PACKAGE_JSON_KEYS);
+            }
+            return String.valueOf(value);
+        } catch (JsonParseException | IllegalStateException ex) {
+            throw new IOException("Unable to read the manifest: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static Object readJson(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+        case BEGIN_OBJECT:
+            Map<String, Object> object = new TreeMap<>();
+            reader.beginObject();
+            while (reader.hasNext())
+                object.put(reader.nextName(), readJson(reader));
+            reader.endObject();
+            return object;
+        case BEGIN_ARRAY:
+            List<Object> array = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext())
+                array.add(readJson(reader));
+            reader.endArray();
+            return array;
+        case NULL:
+            reader.nextNull();
+            return null;
+        case BOOLEAN:
+            return reader.nextBoolean();
+        default:
+            return reader.nextString();
+        }
+    }
+
+    private static String lines(InputStream input, boolean unordered) throws IOException {
+        List<String> lines = new ArrayList<>();
+        Reader source = new InputStreamReader(input, UTF_8);
+        try (BufferedReader reader = new BufferedReader(source)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("//"))
+                    continue;
+                if (unordered) {
+                    int comment = line.indexOf(" #");
+                    if (comment > 0)
+                        line = line.substring(0, comment).trim();
+                }
+                lines.add(line.replaceAll("\\s+", " "));
+            }
+        }
+
+        if (unordered)
+            Collections.sort(lines);
+
+        StringBuilder canonical = new StringBuilder();
+        for (String line : lines)
+            canonical.append(line).append('\n');
+        return canonical.toString();
+    }
+}
@@ -0,0 +1,161 @@
+package io.meterian.jenkins.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tells whether a changed path is a dependency manifest or a lockfile, and of
+ * which ecosystem. Paths are matched on their file name only, so that i.e.
+ * <code>backend/pom.xml</code> matches but <code>docs/pom.xml.md</code> does not.
+ *
+ * The file names of all the ecosystems are compiled once: exact names are
+ * looked up in a map and the ones with wildcards are matched by a single
+ * regular expression, so that changes with many thousands of paths are
+ * checked in linear time.
+ */
+public class ManifestDetector {
+
+    private static final ManifestDetector DEFAULTS = new Builder()
+            .add("maven", "pom.xml")
+            .add("gradle", "build.gradle", "build.gradle.kts", "settings.gradle", "settings.gradle.kts", "gradle.lockfile", "*.versions.toml")
+            .add("npm", "package.json", "package-lock.json", "npm-shrinkwrap.json")
+            .add("yarn", "yarn.lock")
+            .add("pnpm", "pnpm-lock.yaml")
+            .add("python", "requirements*.txt", "Pipfile", "Pipfile.lock", "setup.py", "setup.cfg", "pyproject.toml", "poetry.lock")
+            .add("go", "go.mod", "go.sum", "Gopkg.toml", "Gopkg.lock")
+            .add("rust", "Cargo.toml", "Cargo.lock")
+            .add("php", "composer.json", "composer.lock")
+            .add("dotnet", "*.csproj", "*.vbproj", "*.fsproj", "packages.config", "packages.lock.json", "Directory.Packages.props", "paket.dependencies", "paket.lock")
+            .add("ruby", "Gemfile", "Gemfile.lock", "*.gemspec")
+            .add("scala", "build.sbt")
+            .build();
+
+    private final Map<String, List<String>> patterns;
+    private final Map<String, String> names;
+    private final Pattern wildcards;
+    private final List<String> wildcardEcosystems;
+
+    private ManifestDetector(Map<String, List<String>> patterns, Map<String, String> names, Pattern wildcards, List<String> wildcardEcosystems) {
+        this.patterns = patterns;
+        this.names = names;
+        this.wildcards = wildcards;
+        this.wildcardEcosystems = wildcardEcosystems;
+    }
+
+    public static ManifestDetector defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns the ecosystem of the manifest at the given path, null if the
+     * path is not a manifest
+     */
+    public String ecosystemOf(String path) {
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        String name = slash < 0 ? path : path.substring(slash + 1);
+
+        String ecosystem = names.get(name);
+        if (ecosystem != null || wildcards == null)
+            return ecosystem;
+
+        Matcher matcher = wildcards.matcher(name);
+        if (!matcher.matches())
+            return null;
+
+        for (int group = 1; group <= wildcardEcosystems.size(); group++)
+            if (matcher.start(group) >= 0)
+                return wildcardEcosystems.get(group - 1);
+
+        return null;
+    }
+
+    public boolean isManifest(String path) {
+        return ecosystemOf(path) != null;
+    }
+
+    /**
+     * Returns the manifests among the given paths, in the same order
+     */
+    public List<String> manifests(Collection<String> paths) {
+        List<String> manifests = new ArrayList<>();
+        for (String path : paths)
+            if (isManifest(path))
+                manifests.add(path);
+
+        return manifests;
+    }
+
+    /**
+     * Collects the file names of each ecosystem, where <code>*</code> matches
+     * any sequence of characters
+     */
+    public static class Builder {
+        private final Map<String, List<String>> patterns = new LinkedHashMap<>();
+
+        public Builder add(String ecosystem, String... names) {
+            List<String> existing = patterns.computeIfAbsent(ecosystem, k -> new ArrayList<>());
+            Collections.addAll(existing, names);
+            return this;
+        }
+
+        public Builder addAll(ManifestDetector detector) {
+            for (Map.Entry<String, List<String>> entry : detector.patterns.entrySet())
+                add(entry.getKey(), entry.getValue().toArray(new String[0]));
+            return this;
+        }
+
+        public ManifestDetector build() {
+            Map<String, List<String>> copy = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> entry : patterns.entrySet())
+                copy.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+
+            Map<String, String> names = new HashMap<>();
+            Map<String, StringBuilder> regexes = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> entry : patterns.entrySet()) {
+                for (String name : entry.getValue()) {
+                    if (name.indexOf('*') < 0) {
+                        names.put(name, entry.getKey());
+                    } else {
+                        StringBuilder regex = regexes.get(entry.getKey());
+                        if (regex == null)
+                            regexes.put(entry.getKey(), regex = new StringBuilder());
+                        else
+                            regex.append('|');
+                        regex.append(toRegex(name));
+                    }
+                }
+            }
+
+            if (regexes.isEmpty())
+                return new ManifestDetector(copy, names, null, Collections.<String>emptyList());
+
+            StringBuilder all = new StringBuilder();
+            for (StringBuilder regex : regexes.values()) {
+                if (all.length() > 0)
+                    all.append('|');
+                all.append('(').append(regex).append(')');
+            }
+
+            return new ManifestDetector(copy, names, Pattern.compile(all.toString()), new ArrayList<>(regexes.keySet()));
+        }
+
+        private static String toRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            String[] parts = glob.split("\\*", -1);
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0)
+                    regex.append(".*");
+                if (!parts[i].isEmpty())
+                    regex.append(Pattern.quote(parts[i]));
+            }
+            return "(?:" + regex + ")";
+        }
+    }
+}
@@ -1,27 +1,33 @@
 package io.meterian.jenkins.core;
 
 import com.meterian.common.system.LineGobbler;
-import com.meterian.common.system.OS;
-import com.meterian.common.system.Shell;
 import com.meterian.common.system.Shell.Options;
-import com.meterian.common.system.Shell.Task;
 import hudson.EnvVars;
+import io.meterian.jenkins.core.report.MeterianReport;
+import io.meterian.jenkins.core.report.ReportParser;
 import io.meterian.jenkins.glue.MeterianPlugin.Configuration;
+import io.meterian.jenkins.glue.launchers.ClientLauncher;
+import io.meterian.jenkins.glue.launchers.ShellClientLauncher;
+import io.meterian.jenkins.io.CgroupLimits;
+import io.meterian.jenkins.io.ClassDataArchive;
 import io.meterian.jenkins.io.ClientDownloader;
-import io.meterian.jenkins.io.HttpClientFactory;
-import org.apache.http.NameValuePair;
+import io.meterian.jenkins.io.ConsoleSink;
+import io.meterian.jenkins.io.JavaVersion;
+import io.meterian.jenkins.io.SharedHttpClient;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.utils.URLEncodedUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class Meterian {
 
@@ -35,50 +41,96 @@ public class Meterian {
         public UUID projectUUID;
         public String projectBranch;
         public URI reportUrl;
+        public boolean buildUnsuccessful;
+        public Map<String, Integer> scores = new LinkedHashMap<>();
+        public Map<String, Integer> minimumScores = new LinkedHashMap<>();
+        public List<String> failedChecks = new ArrayList<>();
+        public List<String> errors = new ArrayList<>();
+        public Map<String, String> advisories = new LinkedHashMap<>();
+        public MeterianReport report;
+        public String blockingFinding;
+        public boolean timedOut;
+        public String clientSizing;
+
+        /**
+         * True when the client ran to the end and gave a verdict, so that the
+         * result can be reused: not when it timed out, was stopped at the first
+         * blocking finding, or failed without a verdict, i.e. on network errors
+         */
+        public boolean isComplete() {
+            return !timedOut && blockingFinding == null && (exitCode == 0 || buildUnsuccessful);
+        }
+
         @Override
         public String toString() {
-            return "[exitCode=" + exitCode + ", projectUUID=" + projectUUID + ", projectBranch=" + projectBranch + ", reportUrl=" + reportUrl + "]";
+            return "[exitCode=" + exitCode + ", projectUUID=" + projectUUID + ", projectBranch=" + projectBranch + ", reportUrl=" + reportUrl
+                    + ", scores=" + scores + ", failedChecks=" + failedChecks + ", advisories=" + advisories.size() + ", errors=" + errors.size() + "]";
         }
 
     }
 
     private static final Logger log = LoggerFactory.getLogger(Meterian.class);
 
+    private static final String REPORT_JSON_ARG = "--report-json=";
+
+    private static final long JAVA_VERSION_TIMEOUT_IN_SECONDS = 30L;
+    private static final long PROBE_TIMEOUT_IN_SECONDS = 10L;
+
+    // by node and java on the path, as probing costs a JVM start
+    private static final Map<String, JavaVersion> javaVersions = new ConcurrentHashMap<>();
+    private static final Map<String, Boolean> workingCommands = new ConcurrentHashMap<>();
+
     private final Configuration config;
     private final EnvVars environment;
     private final PrintStream console;
     private final String args;
-    private final Shell shell;
+    private final ClientLauncher launcher;
+    private OutputScanner scanner;
+    private volatile ClientLauncher.Process running;
+    private volatile boolean stopRequested;
+    private volatile boolean killRequested;
+    private String archivePath;
+    private String archiveDump;
+    private volatile boolean archiveRejected;
 
     private File clientJar;
     private List<String> finalClientArgs;
     private List<String> finalJvmArgs;
+    private Integer timeoutInMinutes;
+    private int concurrentClients = 1;
+    private ProcessPriority processPriority = ProcessPriority.NONE;
+    private boolean background;
 
     public static Meterian build(Configuration config, EnvVars environment, PrintStream logger, String args)
             throws IOException {
-        Meterian meterian = new Meterian(config, environment, logger, args);
+        return build(config, environment, logger, args, new ShellClientLauncher());
+    }
+
+    public static Meterian build(Configuration config, EnvVars environment, PrintStream logger, String args, ClientLauncher launcher)
+            throws IOException {
+        Meterian meterian = new Meterian(config, environment, logger, args, launcher);
         meterian.init();
         return meterian;
     }
 
     public static Meterian build(Configuration config, EnvVars environment, PrintStream logger, String args, File clientJar)
             throws IOException {
-        Meterian meterian = new Meterian(config, environment, logger, args);
+        Meterian meterian = new Meterian(config, environment, logger, args, new ShellClientLauncher());
         meterian.init(clientJar);
         return meterian;
     }
 
-    private Meterian(Configuration config, EnvVars environment, PrintStream logger, String args) throws IOException {
+    private Meterian(Configuration config, EnvVars environment, PrintStream logger, String args, ClientLauncher launcher) throws IOException {
         this.config = config;
         this.args = args;
         this.environment = environment;
         this.console = logger;
-        this.shell = new Shell();
+        this.launcher = launcher;
     }
 
     private void init() throws IOException {
-        HttpClient httpClient = new HttpClientFactory().newHttpClient(config);
-        clientJar = new ClientDownloader(httpClient, config.getMeterianBaseUrl(), console).load();
+        HttpClient httpClient = SharedHttpClient.get(config);
+        clientJar = new ClientDownloader(httpClient, config.getMeterianBaseUrl(), console, config.getClientRefreshMinutes()).load();
     }
 
     private void init(File clientJar) {
@@ -86,6 +138,7 @@ public class Meterian {
     }
 
     public void prepare(String... extraClientArgs) {
+        stopRequested = false;
         finalJvmArgs = compose(config.getJvmArgs(), mandatoryJvmArgs());
         finalClientArgs = compose(args, extraClientArgs);
     }
@@ -104,19 +157,272 @@ public class Meterian {
         return finalClientArgs;
     }
 
-    public Result run() throws IOException {
+    /**
+     * Identifies the client in use, changes when a newer client is downloaded
+     */
+    public String getClientVersion() {
+        if (clientJar == null)
+            return "";
+
+        String etag = ClientDownloader.etagOf(clientJar);
+        return etag.isEmpty() ? clientJar.length() + "@" + clientJar.lastModified() : etag;
+    }
+
+    /**
+     * Overrides the global client timeout for this analysis, ignored when null
+     * or not positive
+     */
+    public void setTimeoutInMinutes(Integer timeoutInMinutes) {
+        this.timeoutInMinutes = timeoutInMinutes;
+    }
+
+    /**
+     * The clients running on the node of this one, itself included, used to
+     * size the client, see {@link ClientSizing}
+     */
+    public void setConcurrentClients(int concurrentClients) {
+        this.concurrentClients = concurrentClients;
+    }
+
+    /**
+     * Sets the priority of the client process for this analysis, falling back
+     * to the global one for the values not set
+     */
+    public void setProcessPriority(ProcessPriority processPriority) {
+        this.processPriority = processPriority == null ? ProcessPriority.NONE : processPriority;
+    }
+
+    /**
+     * Marks the analysis as a background one, i.e. of a scheduled build, run
+     * at low priority when so configured
+     */
+    public void setBackground(boolean background) {
+        this.background = background;
+    }
+
+    public long getTimeoutInSeconds() {
+        int minutes = (timeoutInMinutes != null && timeoutInMinutes > 0) ? timeoutInMinutes : config.getClientTimeoutMinutes();
+        return TimeUnit.MINUTES.toSeconds(minutes);
+    }
+
+    /**
+     * Runs the analysis, killing the client when the timeout expires: when the
+     * calling thread is interrupted, i.e. because the build was aborted, the
+     * client is killed and the interruption propagated.
+     */
+    public Result run() throws IOException, InterruptedException {
         log.info("url:  {}", config.getMeterianBaseUrl());
         log.info("jvm:  {}", finalJvmArgs);
         log.info("args: {}", finalClientArgs);
 
         Result result = new Result();
-        Task task = shell.exec(commands(finalJvmArgs, finalClientArgs), options(result));
-        task.waitFor();
-        result.exitCode = task.exitValue();
+        if (stopRequested) {
+            // stopped before it could start, i.e. while waiting for a permit
+            log.info("Analysis stopped before launching the client");
+            result.exitCode = -1;
+            return result;
+        }
+
+        String clientJarPath = launcher.install(clientJar);
+        scanner = newScanner();
+        killRequested = false;
+
+        List<String> clientArgs = new ArrayList<>(finalClientArgs);
+        String reportPath = userReportPath(clientArgs);
+        boolean temporaryReport = (reportPath == null);
+        if (temporaryReport) {
+            reportPath = launcher.newTempPath("meterian-report-", ".json");
+            clientArgs.add(REPORT_JSON_ARG + reportPath);
+        }
+
+        JavaVersion java = (config.isAutoSizeClient() || config.isWarmStart()) ? javaVersion() : JavaVersion.UNKNOWN;
+        List<String> jvmArgs = finalJvmArgs;
+        if (config.isAutoSizeClient())
+            jvmArgs = sized(jvmArgs, java, result);
+
+        try {
+            boolean exited = false;
+            try (ConsoleSink sink = new ConsoleSink(console, "[meterian] ")) {
+                ClientLauncher.Process process = launcher.launch(commands(clientJarPath, jvmArgs, clientArgs, java), options(result, sink));
+                running = process;
+                if (stopRequested || killRequested)
+                    stopEarly();
+
+                long timeout = getTimeoutInSeconds();
+                result.exitCode = process.waitFor(timeout);
+                exited = !process.isTimedOut() && !killRequested;
+                if (process.isTimedOut()) {
+                    result.timedOut = true;
+                    String message = String.format("[meterian] Analysis timed out after %d minutes, the client was stopped", timeout / 60);
+                    log.warn(message);
+                    console.println(message);
+                }
+            } finally {
+                running = null;
+                settleArchive(exited);
+            }
+
+            result.report = readReport(reportPath);
+        } catch (IOException ex) {
+            if (ex.getCause() instanceof InterruptedException) {
+                Thread.interrupted();
+                throw (InterruptedException) ex.getCause();
+            }
+            throw ex;
+        } finally {
+            if (temporaryReport)
+                deleteQuietly(reportPath);
+        }
 
         return result;
     }
 
+    private List<String> sized(List<String> jvmArgs, JavaVersion java, Result result) throws IOException {
+        CgroupLimits limits = CgroupLimits.read(this::readNodeFile);
+        ClientSizing sizing = ClientSizing.of(limits, concurrentClients, jvmArgs, java);
+        log.info("Client sizing on {}: {}", limits, sizing.getJvmArgs());
+        if (sizing.getJvmArgs().isEmpty())
+            return jvmArgs;
+
+        result.clientSizing = sizing.describe();
+        console.println("[meterian] Client sized for a " + result.clientSizing);
+
+        List<String> args = new ArrayList<>(jvmArgs);
+        args.addAll(sizing.getJvmArgs());
+        return args;
+    }
+
+    private JavaVersion javaVersion() throws IOException {
+        String key = environment.get("NODE_NAME", "") + "|" + environment.get("JAVA_HOME", "") + "|" + environment.get("PATH", "");
+        JavaVersion cached = javaVersions.get(key);
+        if (cached != null)
+            return cached;
+
+        StringBuffer output = new StringBuffer();
+        LineGobbler gobbler = (type, line) -> output.append(line).append('\n');
+        JavaVersion java;
+        try {
+            ClientLauncher.Process process = launcher.launch(new String[] {"java", "-version"}, new Options()
+                    .withOutputGobbler(gobbler)
+                    .withErrorGobbler(gobbler)
+                    .withEnvironmentVariables(this.environment));
+            process.waitFor(JAVA_VERSION_TIMEOUT_IN_SECONDS);
+            java = JavaVersion.parse(output.toString());
+        } catch (IOException ex) {
+            if (ex.getCause() instanceof InterruptedException)
+                throw ex;
+            log.debug("Unable to run java -version: {}", ex.toString());
+            java = JavaVersion.UNKNOWN;
+        }
+
+        log.info("Java version on the node: {}", java);
+        if (java.isKnown())
+            javaVersions.put(key, java);
+        return java;
+    }
+
+    private String readNodeFile(String path) throws IOException {
+        try (InputStream in = launcher.open(path)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            if (ex.getCause() instanceof InterruptedException)
+                throw ex;
+            log.debug("Unable to read {}: {}", path, ex.toString());
+            return null;
+        }
+    }
+
+    private OutputScanner newScanner() {
+        List<OutputScanner.Rule> rules = new ArrayList<>(ClientOutputRules.defaults());
+
+        Severity failFast = Severity.parse(config.getFailFastSeverity());
+        if (failFast != null && !usesAutofix()) {
+            log.info("Fail fast on findings at or above {}", failFast);
+            rules.add(new ClientOutputRules.FailFastRule(failFast, this::stopEarly));
+        }
+
+        return new OutputScanner(rules);
+    }
+
+    /**
+     * True when the client runs any autofix mode, i.e. <code>--autofix:readonly</code>
+     * for Gerrit, that must complete to write its fixes
+     */
+    public boolean usesAutofix() {
+        for (String arg : finalClientArgs)
+            if (arg.startsWith("--autofix"))
+                return true;
+        return false;
+    }
+
+    /**
+     * Stops the analysis in progress, if any, i.e. when a newer revision is
+     * being analysed, or prevents it from starting until prepared again; can
+     * be called from any thread
+     */
+    public void stop() {
+        stopRequested = true;
+        stopEarly();
+    }
+
+    // called from the thread pumping the client output, which must not be
+    // the one killing the process: on remote nodes that would deadlock
+    private void stopEarly() {
+        killRequested = true;
+        ClientLauncher.Process process = running;
+        if (process == null)
+            return;
+
+        Thread stopper = new Thread(() -> {
+            try {
+                process.destroy();
+            } catch (IOException ex) {
+                log.warn("Unable to stop the Meterian client", ex);
+            }
+        }, "meterian-fail-fast");
+        stopper.setDaemon(true);
+        stopper.start();
+    }
+
+    private String userReportPath(List<String> clientArgs) {
+        for (String arg : clientArgs)
+            if (arg.startsWith(REPORT_JSON_ARG))
+                return arg.substring(REPORT_JSON_ARG.length());
+
+        return null;
+    }
+
+    private MeterianReport readReport(String reportPath) {
+        try {
+            if (!launcher.exists(reportPath)) {
+                log.info("No json report produced by the client at {}", reportPath);
+                return null;
+            }
+
+            try (InputStream in = launcher.open(reportPath)) {
+                MeterianReport report = new ReportParser().parse(in);
+                log.info("Meterian json report: {}", report);
+                return report;
+            }
+        } catch (IOException ex) {
+            log.warn("Unable to read the json report at {}", reportPath, ex);
+            return null;
+        }
+    }
+
+    private void deleteQuietly(String path) {
+        try {
+            launcher.delete(path);
+        } catch (IOException ex) {
+            log.debug("Unable to delete {}", path, ex);
+        }
+    }
+
     private String[] mandatoryJvmArgs() {
         return new String[]{
                 "-Dcli.param.folder=" + environment.get("WORKSPACE")
@@ -138,13 +444,18 @@ public class Meterian {
         return args;
     }
 
-    private String[] commands(List<String> finalJvmArgs, List<String> finalClientArgs) {
+    private String[] commands(String clientJarPath, List<String> finalJvmArgs, List<String> finalClientArgs, JavaVersion java) throws IOException {
         List<String> commands = new ArrayList<>();
+        commands.addAll(priorityPrefix());
         commands.add("java");
         for (String arg : finalJvmArgs)
             commands.add(arg);
+        if (config.isWarmStart())
+            commands.addAll(warmStartArgs(clientJarPath, java));
+        if (config.isQuickJit())
+            commands.add(ClassDataArchive.QUICK_JIT_ARG);
         commands.add("-jar");
-        commands.add(clientJar.getAbsolutePath());
+        commands.add(clientJarPath);
         for (String arg : finalClientArgs)
             commands.add(arg);
 
@@ -152,55 +463,113 @@ public class Meterian {
         return commands.toArray(new String[commands.size()]);
     }
 
-    private Options options(Result result) {
-        LineGobbler gobbler = new LineGobbler() {
-            int count = 0;
+    private List<String> warmStartArgs(String clientJarPath, JavaVersion java) throws IOException {
+        if (!ClassDataArchive.isSupported(java)) {
+            log.info("Warm start needs Java {} or later, the node runs {}", ClassDataArchive.MIN_JAVA_VERSION, java);
+            return Collections.emptyList();
+        }
 
-            @Override
-            public void process(String type, String line) {
-                log.info(line);
+        archivePath = ClassDataArchive.archivePathFor(clientJarPath);
+        if (launcher.exists(archivePath))
+            return ClassDataArchive.useArgs(archivePath);
 
-                console.print("[meterian] ");
-                console.println(line);
-                if (++count % 10 == 0)
-                    console.flush();
+        archiveDump = ClassDataArchive.dumpPathFor(archivePath);
+        return ClassDataArchive.dumpArgs(archiveDump);
+    }
 
-                try {
-                    parseMeterianReportURLIfPresent(line);
-                } catch (URISyntaxException e) {
-                    log.warn("Unexpected", e);
-                }
+    // the dump is published only when the client exited on its own, as a
+    // killed JVM may leave it half written; a rejected archive is deleted
+    // so that the next run dumps it again
+    private void settleArchive(boolean exited) {
+        try {
+            if (archiveDump != null) {
+                if (exited && launcher.exists(archiveDump))
+                    launcher.move(archiveDump, archivePath);
+                else
+                    deleteQuietly(archiveDump);
+            } else if (archiveRejected) {
+                console.println("[meterian] The class data archive of the client was rejected by the JVM, it will be dumped again on the next run");
+                launcher.delete(archivePath);
+            }
+        } catch (IOException ex) {
+            log.warn("Unable to update the class data archive {}", archivePath, ex);
+            if (archiveDump != null)
+                deleteQuietly(archiveDump);
+        } finally {
+            archivePath = null;
+            archiveDump = null;
+            archiveRejected = false;
+        }
+    }
+
+    private List<String> priorityPrefix() throws IOException {
+        ProcessPriority priority = processPriority;
+        if (background && config.isLowPriorityInBackground())
+            priority = priority.orElse(ProcessPriority.LOW);
+        priority = priority.orElse(config.getClientProcessPriority());
+        if (priority.isEmpty())
+            return Collections.emptyList();
+
+        List<String> prefix = priority.prefix(new ProcessPriority.Locator() {
+            @Override
+            public String locate(String tool) throws IOException {
+                return Meterian.this.locate(tool);
+            }
+
+            @Override
+            public boolean works(String... command) throws IOException {
+                return Meterian.this.works(command);
             }
+        });
+        String message = "[meterian] Running the client with " + priority + (prefix.isEmpty() ? " (not supported on this node)" : "");
+        log.info("{}: {}", message, prefix);
+        console.println(message);
+        return prefix;
+    }
+
+    private String locate(String tool) throws IOException {
+        for (String folder : new String[] {"/usr/bin/", "/bin/"})
+            if (launcher.exists(folder + tool))
+                return folder + tool;
+
+        log.info("Unable to find {} on the node", tool);
+        return null;
+    }
+
+    // i.e. systemd-run finds no user session on agents started by ssh
+    private boolean works(String... command) throws IOException {
+        String key = environment.get("NODE_NAME", "") + "|" + String.join(" ", command);
+        Boolean cached = workingCommands.get(key);
+        if (cached != null)
+            return cached;
+
+        boolean works;
+        try {
+            ClientLauncher.Process process = launcher.launch(command, new Options().withEnvironmentVariables(this.environment));
+            works = process.waitFor(PROBE_TIMEOUT_IN_SECONDS) == 0 && !process.isTimedOut();
+        } catch (IOException ex) {
+            if (ex.getCause() instanceof InterruptedException)
+                throw ex;
+            log.debug("Unable to run {}: {}", Arrays.asList(command), ex.toString());
+            works = false;
+        }
+
+        log.info("Probed {} on the node: {}", Arrays.asList(command), works ? "working" : "not working");
+        workingCommands.put(key, works);
+        return works;
+    }
+
+    private Options options(Result result, ConsoleSink sink) {
+        LineGobbler gobbler = new LineGobbler() {
+            @Override
+            public void process(String type, String line) {
+                log.info(line);
+                if (archivePath != null && archiveDump == null && ClassDataArchive.isRejection(line))
+                    archiveRejected = true;
 
-            private void parseMeterianReportURLIfPresent(String line) throws URISyntaxException {
-                if (line.indexOf("http") == -1 || line.indexOf("meterian.") == -1)
-                    return;
-
-                log.debug("Possible URL found in line {}", line);
-                String[] tokens = line.split(" ");
-                for (String token : tokens) {
-                    if (token.startsWith("http")) {
-                        UUID pid = null;
-                        String branch = null;
-                        URI url = new URI(token);
-                        List<NameValuePair> params = URLEncodedUtils.parse(url, Charset.forName("UTF-8"));
-                        for (NameValuePair param : params) {
-                            if ("branch".equalsIgnoreCase(param.getName())) {
-                                branch = param.getValue();
-                                log.debug("Meterian project branch?: {}", branch);
-                            } else if ("pid".equalsIgnoreCase(param.getName())) {
-                                pid = UUID.fromString(param.getValue());
-                                log.debug("Meterian project UUID?: {}", pid);
-                            }
-                        }
-
-                        if (branch != null && pid != null) {
-                            result.projectBranch = branch;
-                            result.projectUUID = pid;
-                            result.reportUrl = url;
-                            log.info("Meterian project info: {}", result);
-                        }
-                    }
+                sink.println(line);
+                synchronized (result) {
+                    scanner.scan(line, result);
                 }
             }
         };
@@ -211,7 +580,6 @@ public class Meterian {
                 .withOutputGobbler(gobbler)
                 .withErrorGobbler(gobbler)
                 .withEnvironmentVariables(this.environment)
-                .withEnvironmentVariable("METERIAN_API_TOKEN", config.getMeterianAPIToken())
-                .withEnvironmentVariables(new OS().getenv());
+                .withEnvironmentVariable("METERIAN_API_TOKEN", config.getMeterianAPIToken());
     }
 }
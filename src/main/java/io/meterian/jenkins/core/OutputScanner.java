@@ -0,0 +1,216 @@
+package io.meterian.jenkins.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scans the client output for every keyword of a set of {@link Rule}s in a
+ * single pass over each line, using an Aho-Corasick automaton.
+ *
+ * Most lines contain no keyword at all, and are ruled out without being
+ * walked: for every keyword the scanner looks for a character that is rare in
+ * a build output, i.e. the '=' of "pid=", with String.indexOf(int), which the
+ * JVM runs with vector instructions. Keywords made of common characters only
+ * are looked for by their first two characters instead. The other lines are
+ * walked one character at a time through a precomputed transition table,
+ * starting where the first keyword may start. Rules are invoked only on a
+ * match and only then they parse whatever they need out of the line.
+ *
+ * Keywords are expected to be ASCII, other characters never match.
+ */
+public class OutputScanner {
+
+    public interface Rule {
+        List<String> keywords();
+
+        /**
+         * Called for every occurrence of one of the keywords in a line.
+         * @param start the position of the keyword in the line
+         */
+        void matched(String keyword, String line, int start, Meterian.Result result);
+    }
+
+    private static final int ALPHABET = 128;
+
+    // characters found on most lines of a build output: lowercase words,
+    // versions, paths and urls, and the usual log levels
+    private static final String COMMON = "abcdefghijklmnopqrstuvwxyz0123456789 \t./-:_[]()'\",@INFOWARNG";
+
+    private static class Match {
+        final String keyword;
+        final Rule rule;
+
+        Match(String keyword, Rule rule) {
+            this.keyword = keyword;
+            this.rule = rule;
+        }
+    }
+
+    // transitions[state + c] is the next state, states are premultiplied by
+    // the alphabet size and negated when they have matches
+    private final int[] transitions;
+    private final Match[][] matches;
+    private final boolean[] startChars = new boolean[ALPHABET];
+    // a rare character of each keyword, with its largest offset in them
+    private final char[] anchors;
+    private final int[] anchorOffsets;
+    // the first two characters of the keywords without a rare character
+    private final String[] prefixes;
+
+    public OutputScanner(List<? extends Rule> rules) {
+        List<int[]> goTo = new ArrayList<>();
+        List<List<Match>> outputs = new ArrayList<>();
+        goTo.add(newState());
+        outputs.add(new ArrayList<>());
+        Map<Character, Integer> anchors = new LinkedHashMap<>();
+        Set<String> prefixes = new LinkedHashSet<>();
+
+        for (Rule rule : rules) {
+            for (String keyword : rule.keywords()) {
+                int rare = rareCharIn(keyword);
+                if (rare == -1)
+                    prefixes.add(keyword.substring(0, Math.min(2, keyword.length())));
+                else
+                    anchors.merge(keyword.charAt(rare), rare, Math::max);
+
+                int state = 0;
+                for (int i = 0; i < keyword.length(); i++) {
+                    char c = keyword.charAt(i);
+                    if (c >= ALPHABET)
+                        throw new IllegalArgumentException("Non ASCII keyword: " + keyword);
+
+                    if (i == 0)
+                        startChars[c] = true;
+                    if (goTo.get(state)[c] == -1) {
+                        goTo.get(state)[c] = goTo.size();
+                        goTo.add(newState());
+                        outputs.add(new ArrayList<>());
+                    }
+                    state = goTo.get(state)[c];
+                }
+                outputs.get(state).add(new Match(keyword, rule));
+            }
+        }
+
+        int[] failure = new int[goTo.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = goTo.get(0)[c];
+            if (next == -1) {
+                goTo.get(0)[c] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs.get(state).addAll(outputs.get(failure[state]));
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = goTo.get(state)[c];
+                if (next == -1) {
+                    goTo.get(state)[c] = goTo.get(failure[state])[c];
+                } else {
+                    failure[next] = goTo.get(failure[state])[c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        transitions = new int[goTo.size() * ALPHABET];
+        matches = new Match[outputs.size()][];
+        for (int state = 0; state < goTo.size(); state++) {
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = goTo.get(state)[c];
+                transitions[state * ALPHABET + c] = outputs.get(next).isEmpty() ? next * ALPHABET : -next * ALPHABET;
+            }
+            matches[state] = outputs.get(state).isEmpty() ? null : outputs.get(state).toArray(new Match[0]);
+        }
+
+        this.anchors = new char[anchors.size()];
+        this.anchorOffsets = new int[anchors.size()];
+        int i = 0;
+        for (Map.Entry<Character, Integer> anchor : anchors.entrySet()) {
+            this.anchors[i] = anchor.getKey();
+            this.anchorOffsets[i++] = anchor.getValue();
+        }
+        this.prefixes = prefixes.toArray(new String[0]);
+    }
+
+    public void scan(String line, Meterian.Result result) {
+        final int[] table = transitions;
+        final boolean[] starts = startChars;
+        final int length = line.length();
+        final int from = firstKeywordStart(line);
+        if (from == -1)
+            return;
+
+        int state = 0;
+        for (int i = from; i < length; i++) {
+            char c = line.charAt(i);
+            if (state == 0) {
+                // fast path: most characters can't start a keyword, no need
+                // to go through the table for them
+                while (c >= ALPHABET || !starts[c]) {
+                    if (++i == length)
+                        return;
+                    c = line.charAt(i);
+                }
+            } else if (c >= ALPHABET) {
+                state = 0;
+                continue;
+            }
+
+            state = table[state + c];
+            if (state < 0) {
+                state = -state;
+                for (Match match : matches[state / ALPHABET])
+                    match.rule.matched(match.keyword, line, i - match.keyword.length() + 1, result);
+            }
+        }
+    }
+
+    /**
+     * The first position in the line where a keyword may start, or -1 when
+     * there's none: no keyword can match before it.
+     */
+    private int firstKeywordStart(String line) {
+        int first = -1;
+        for (int i = 0; i < anchors.length; i++) {
+            int pos = line.indexOf(anchors[i]);
+            if (pos != -1)
+                first = earliest(first, Math.max(0, pos - anchorOffsets[i]));
+        }
+        for (String prefix : prefixes) {
+            int pos = line.indexOf(prefix);
+            if (pos != -1)
+                first = earliest(first, pos);
+        }
+        return first;
+    }
+
+    private static int earliest(int first, int pos) {
+        return first == -1 ? pos : Math.min(first, pos);
+    }
+
+    private static int rareCharIn(String keyword) {
+        for (int i = 0; i < keyword.length(); i++)
+            if (COMMON.indexOf(keyword.charAt(i)) == -1)
+                return i;
+        return -1;
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+}
@@ -0,0 +1,174 @@
+package io.meterian.jenkins.core;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CPU and I/O priority of the client process, and optionally the systemd
+ * slice it runs in, so that analyses do not slow down the builds sharing the
+ * node.
+ *
+ * The client is launched through <code>systemd-run</code>, <code>nice</code>
+ * and <code>ionice</code>, all replacing themselves with the next command, so
+ * that stopping the client still stops the whole process tree. Tools missing
+ * on the node, i.e. on hosts other than Linux, are skipped, and so is
+ * <code>systemd-run</code> when it cannot open a user scope, i.e. as the user
+ * running the agent has no systemd session.
+ */
+public class ProcessPriority implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public interface Locator {
+        /**
+         * Returns the path of the tool on the node, or null when missing
+         */
+        public String locate(String tool) throws IOException;
+
+        /**
+         * Returns true when the command runs successfully on the node
+         */
+        public default boolean works(String... command) throws IOException {
+            return true;
+        }
+    }
+
+    public enum IoClass {
+        BEST_EFFORT("2", "7"),
+        IDLE("3", null);
+
+        private final String ionice;
+        private final String level;
+
+        private IoClass(String ionice, String level) {
+            this.ionice = ionice;
+            this.level = level;
+        }
+
+        public String label() {
+            return name().toLowerCase().replace('_', '-');
+        }
+
+        public static IoClass parse(String text) {
+            if (text != null)
+                for (IoClass value : values())
+                    if (value.label().equalsIgnoreCase(text.trim()) || value.name().equalsIgnoreCase(text.trim()))
+                        return value;
+            return null;
+        }
+    }
+
+    public static final int MAX_NICENESS = 19;
+
+    public static final ProcessPriority NONE = new ProcessPriority(null, null, null);
+
+    // used for background analyses, see ScanPermits.Priority
+    public static final ProcessPriority LOW = new ProcessPriority(MAX_NICENESS, IoClass.IDLE, null);
+
+    private final Integer niceness;
+    private final IoClass ioClass;
+    private final String slice;
+
+    private ProcessPriority(Integer niceness, IoClass ioClass, String slice) {
+        this.niceness = niceness;
+        this.ioClass = ioClass;
+        this.slice = slice;
+    }
+
+    /**
+     * Builds a priority from the configuration, where null or empty values
+     * are not set; niceness is kept between 0 and {@value #MAX_NICENESS}, as
+     * raising the priority would need root
+     */
+    public static ProcessPriority of(Integer niceness, String ioClass, String slice) {
+        Integer nice = niceness == null ? null : Math.max(0, Math.min(MAX_NICENESS, niceness));
+        String name = (slice == null || slice.trim().isEmpty()) ? null : slice.trim();
+        if (name != null && !name.matches("[A-Za-z0-9_.:@-]+"))
+            throw new IllegalArgumentException("Invalid slice name: " + slice);
+        return new ProcessPriority(nice, IoClass.parse(ioClass), name);
+    }
+
+    public Integer getNiceness() {
+        return niceness;
+    }
+
+    public IoClass getIoClass() {
+        return ioClass;
+    }
+
+    public String getSlice() {
+        return slice;
+    }
+
+    public boolean isEmpty() {
+        return niceness == null && ioClass == null && slice == null;
+    }
+
+    /**
+     * Fills the values not set here with the defaults
+     */
+    public ProcessPriority orElse(ProcessPriority defaults) {
+        if (defaults == null)
+            return this;
+
+        return new ProcessPriority(
+                niceness != null ? niceness : defaults.niceness,
+                ioClass != null ? ioClass : defaults.ioClass,
+                slice != null ? slice : defaults.slice);
+    }
+
+    /**
+     * The commands to put in front of the client command line
+     */
+    public List<String> prefix(Locator locator) throws IOException {
+        List<String> commands = new ArrayList<>();
+        if (slice != null) {
+            String systemdRun = locator.locate("systemd-run");
+            if (systemdRun != null && locator.works(systemdRun, "--user", "--scope", "--quiet", "true")) {
+                commands.add(systemdRun);
+                commands.add("--user");
+                commands.add("--scope");
+                commands.add("--quiet");
+                commands.add("--slice=" + slice);
+            }
+        }
+
+        if (niceness != null) {
+            String nice = locator.locate("nice");
+            if (nice != null) {
+                commands.add(nice);
+                commands.add("-n");
+                commands.add(String.valueOf(niceness));
+            }
+        }
+
+        if (ioClass != null) {
+            String ionice = locator.locate("ionice");
+            if (ionice != null) {
+                commands.add(ionice);
+                commands.add("-c");
+                commands.add(ioClass.ionice);
+                if (ioClass.level != null) {
+                    commands.add("-n");
+                    commands.add(ioClass.level);
+                }
+            }
+        }
+
+        return commands;
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        if (niceness != null)
+            parts.add("nice " + niceness);
+        if (ioClass != null)
+            parts.add("ionice " + ioClass.label());
+        if (slice != null)
+            parts.add("slice " + slice);
+        return parts.isEmpty() ? "default priority" : String.join(", ", parts);
+    }
+}
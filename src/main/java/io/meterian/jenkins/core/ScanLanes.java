@@ -0,0 +1,128 @@
+package io.meterian.jenkins.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the analyses in progress per lane, i.e. per Gerrit change or per
+ * branch, so that when a newer revision starts the older, obsolete, analysis
+ * is stopped and its outcome ignored.
+ *
+ * Revisions are ordered by a number, i.e. the patchset or the build number:
+ * an analysis entering a lane supersedes all the ones with a lower number,
+ * and is superseded at once if a higher one is already there. Analyses of the
+ * same revision, i.e. two steps of one build or a retriggered patchset, run
+ * side by side.
+ */
+public class ScanLanes {
+
+    private static final Logger log = LoggerFactory.getLogger(ScanLanes.class);
+
+    private static final ScanLanes SHARED = new ScanLanes();
+
+    public static class Ticket implements AutoCloseable {
+        private final ScanLanes lanes;
+        private final String lane;
+        private final long revision;
+        private final Runnable stop;
+        private volatile Long supersededBy;
+
+        Ticket(ScanLanes lanes, String lane, long revision, Runnable stop) {
+            this.lanes = lanes;
+            this.lane = lane;
+            this.revision = revision;
+            this.stop = stop;
+        }
+
+        public boolean isSuperseded() {
+            return supersededBy != null;
+        }
+
+        /**
+         * The revision that superseded this analysis, null if still current
+         */
+        public Long getSupersededBy() {
+            return supersededBy;
+        }
+
+        public long getRevision() {
+            return revision;
+        }
+
+        @Override
+        public void close() {
+            lanes.leave(this);
+        }
+
+        private void supersede(long newer) {
+            supersededBy = newer;
+            try {
+                stop.run();
+            } catch (RuntimeException ex) {
+                log.warn("Unable to stop the analysis of {} revision {}", lane, revision, ex);
+            }
+        }
+    }
+
+    // the tickets of the latest revision of each lane
+    private final Map<String, List<Ticket>> current = new HashMap<>();
+
+    public static ScanLanes shared() {
+        return SHARED;
+    }
+
+    /**
+     * Enters a lane with the given revision; the given callback is invoked,
+     * at most once, when a newer revision enters the same lane
+     */
+    public Ticket enter(String lane, long revision, Runnable stop) {
+        Ticket ticket = new Ticket(this, lane, revision, stop);
+        List<Ticket> previous;
+        synchronized (current) {
+            List<Ticket> tickets = current.get(lane);
+            if (tickets != null && !tickets.isEmpty()) {
+                long latest = tickets.get(0).revision;
+                if (latest > revision) {
+                    ticket.supersededBy = latest;
+                    return ticket;
+                }
+                if (latest == revision) {
+                    tickets.add(ticket);
+                    return ticket;
+                }
+            }
+
+            List<Ticket> latest = new ArrayList<>();
+            latest.add(ticket);
+            previous = current.put(lane, latest);
+        }
+
+        if (previous != null) {
+            for (Ticket older : previous) {
+                log.info("Analysis of {} revision {} superseded by revision {}", lane, older.revision, revision);
+                older.supersede(revision);
+            }
+        }
+
+        return ticket;
+    }
+
+    void leave(Ticket ticket) {
+        synchronized (current) {
+            List<Ticket> tickets = current.get(ticket.lane);
+            if (tickets != null && tickets.remove(ticket) && tickets.isEmpty())
+                current.remove(ticket.lane);
+        }
+    }
+
+    public int size() {
+        synchronized (current) {
+            return current.size();
+        }
+    }
+}
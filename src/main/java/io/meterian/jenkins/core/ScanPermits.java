@@ -0,0 +1,308 @@
+package io.meterian.jenkins.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how many clients run at once, across the controller and on each
+ * node, as every client is a JVM of its own.
+ *
+ * Waiting analyses are served by priority, then in arrival order, skipping
+ * the ones whose node is full so that a busy node does not hold the others.
+ * A limit of zero or less means no limit. Permits can be waited for without
+ * holding a thread, see {@link #acquireAsync(String, Priority)}.
+ */
+public class ScanPermits {
+
+    public enum Priority {
+        // latency sensitive, i.e. Gerrit and pull request verifications
+        INTERACTIVE,
+        NORMAL,
+        // i.e. nightly or scheduled builds
+        BACKGROUND;
+
+        public static Priority parse(String text) {
+            if (text != null)
+                for (Priority priority : values())
+                    if (priority.name().equalsIgnoreCase(text.trim()))
+                        return priority;
+            return null;
+        }
+    }
+
+    public static final int DEFAULT_MAX_GLOBAL = 0;
+    public static final int DEFAULT_MAX_PER_NODE = 4;
+
+    private static final ScanPermits SHARED = new ScanPermits(DEFAULT_MAX_GLOBAL, DEFAULT_MAX_PER_NODE);
+
+    public class Permit implements AutoCloseable {
+        private final String node;
+        private final long waitedInMillis;
+        private boolean released;
+
+        Permit(String node, long waitedInMillis) {
+            this.node = node;
+            this.waitedInMillis = waitedInMillis;
+        }
+
+        public long getWaitedInMillis() {
+            return waitedInMillis;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+        final String node;
+        final Priority priority;
+        final long sequence;
+        final long start = System.nanoTime();
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+        Permit permit;
+
+        Waiter(String node, Priority priority, long sequence) {
+            this.node = node;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>();
+    private final Map<String, Integer> runningPerNode = new HashMap<>();
+
+    private int maxGlobal;
+    private int maxPerNode;
+    private int running;
+    private long sequence;
+
+    private long granted;
+    private long totalWaitInMillis;
+    private long maxWaitInMillis;
+
+    public ScanPermits(int maxGlobal, int maxPerNode) {
+        this.maxGlobal = maxGlobal;
+        this.maxPerNode = maxPerNode;
+    }
+
+    public static ScanPermits shared() {
+        return SHARED;
+    }
+
+    public void setLimits(int maxGlobal, int maxPerNode) {
+        List<Waiter> ready;
+        lock.lock();
+        try {
+            this.maxGlobal = maxGlobal;
+            this.maxPerNode = maxPerNode;
+            ready = grant();
+        } finally {
+            lock.unlock();
+        }
+        hand(ready);
+    }
+
+    /**
+     * Returns a permit at once if available, null otherwise
+     */
+    public Permit tryAcquire(String node) {
+        lock.lock();
+        try {
+            if (!waiting.isEmpty() || !fits(node))
+                return null;
+
+            take(node);
+            return newPermit(node, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a permit to run a client on the given node
+     */
+    public Permit acquire(String node, Priority priority) throws InterruptedException {
+        CompletableFuture<Permit> future = acquireAsync(node, priority);
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            abandon(future);
+            throw ex;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Returns a future completed with a permit to run a client on the given
+     * node, so that no thread is held while waiting; the future is completed
+     * on the thread releasing the permit it gets
+     */
+    public CompletableFuture<Permit> acquireAsync(String node, Priority priority) {
+        Waiter waiter;
+        List<Waiter> ready;
+        lock.lock();
+        try {
+            waiter = new Waiter(node, priority, sequence++);
+            waiting.add(waiter);
+            ready = grant();
+        } finally {
+            lock.unlock();
+        }
+        hand(ready);
+        return waiter.future;
+    }
+
+    /**
+     * Stops waiting for a permit requested with {@link #acquireAsync(String, Priority)},
+     * releasing it if it was already granted
+     */
+    public void abandon(CompletableFuture<Permit> future) {
+        if (future == null)
+            return;
+
+        List<Waiter> ready = Collections.emptyList();
+        lock.lock();
+        try {
+            if (waiting.removeIf(waiter -> waiter.future == future))
+                ready = grant();
+        } finally {
+            lock.unlock();
+        }
+        hand(ready);
+
+        // either cancelled before being granted, or the permit is released
+        if (!future.cancel(false) && !future.isCompletedExceptionally())
+            future.join().close();
+    }
+
+    public String stats() {
+        lock.lock();
+        try {
+            int[] queued = new int[Priority.values().length];
+            for (Waiter waiter : waiting)
+                queued[waiter.priority.ordinal()]++;
+
+            StringBuilder text = new StringBuilder()
+                    .append("running: ").append(running)
+                    .append(" (max ").append(maxGlobal > 0 ? String.valueOf(maxGlobal) : "unlimited")
+                    .append(", per node ").append(maxPerNode > 0 ? String.valueOf(maxPerNode) : "unlimited").append(")")
+                    .append(", queued:");
+            for (Priority priority : Priority.values())
+                text.append(' ').append(priority.name().toLowerCase()).append(' ').append(queued[priority.ordinal()]);
+
+            return text.append(", wait avg: ").append(granted == 0 ? 0 : totalWaitInMillis / granted).append(" ms")
+                    .append(", max: ").append(maxWaitInMillis).append(" ms")
+                    .toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The clients holding a permit on the given node
+     */
+    public int getRunning(String node) {
+        lock.lock();
+        try {
+            return runningPerNode.getOrDefault(node, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit newPermit(String node, long waitedInMillis) {
+        granted++;
+        totalWaitInMillis += waitedInMillis;
+        maxWaitInMillis = Math.max(maxWaitInMillis, waitedInMillis);
+        return new Permit(node, waitedInMillis);
+    }
+
+    private void release(Permit permit) {
+        List<Waiter> ready;
+        lock.lock();
+        try {
+            if (permit.released)
+                return;
+
+            permit.released = true;
+            give(permit.node);
+            ready = grant();
+        } finally {
+            lock.unlock();
+        }
+        hand(ready);
+    }
+
+    // grants permits to the waiters in order of priority, skipping the ones
+    // on nodes already full; returns the waiters to hand the permits to
+    private List<Waiter> grant() {
+        if (waiting.isEmpty())
+            return Collections.emptyList();
+
+        List<Waiter> ready = new ArrayList<>();
+        PriorityQueue<Waiter> ordered = new PriorityQueue<>(waiting);
+        while (!ordered.isEmpty() && (maxGlobal <= 0 || running < maxGlobal)) {
+            Waiter waiter = ordered.poll();
+            if (fits(waiter.node)) {
+                take(waiter.node);
+                waiter.permit = newPermit(waiter.node, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waiter.start));
+                ready.add(waiter);
+            }
+        }
+
+        waiting.removeAll(ready);
+        return ready;
+    }
+
+    // completes the futures out of the lock, as they run the code waiting
+    // for the permit; a future abandoned meanwhile gives the permit back
+    private void hand(List<Waiter> ready) {
+        for (Waiter waiter : ready)
+            if (!waiter.future.complete(waiter.permit))
+                waiter.permit.close();
+    }
+
+    private boolean fits(String node) {
+        if (maxGlobal > 0 && running >= maxGlobal)
+            return false;
+        return maxPerNode <= 0 || runningPerNode.getOrDefault(node, 0) < maxPerNode;
+    }
+
+    private void take(String node) {
+        running++;
+        runningPerNode.merge(node, 1, Integer::sum);
+    }
+
+    private void give(String node) {
+        running--;
+        if (runningPerNode.merge(node, -1, Integer::sum) <= 0)
+            runningPerNode.remove(node);
+    }
+}
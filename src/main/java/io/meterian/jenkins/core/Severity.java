@@ -0,0 +1,23 @@
+package io.meterian.jenkins.core;
+
+/**
+ * The severity of an advisory, from the least to the most severe.
+ */
+public enum Severity {
+    LOW, MEDIUM, HIGH, CRITICAL;
+
+    public static Severity parse(String text) {
+        if (text == null)
+            return null;
+
+        for (Severity severity : values())
+            if (severity.name().equalsIgnoreCase(text.trim()))
+                return severity;
+
+        return null;
+    }
+
+    public boolean isAtLeast(Severity other) {
+        return compareTo(other) >= 0;
+    }
+}
@@ -0,0 +1,60 @@
+package io.meterian.jenkins.core;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent calls doing the same work: the first caller for a key
+ * becomes the leader and does the work, the others wait for its value.
+ *
+ * A leader that fails lands with no value, and one of the callers still
+ * waiting takes over as the new leader.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Returns null when the caller is the leader for the key and must call
+     * {@link #land(Object, Object)} when done, otherwise waits and returns the
+     * value of the leader
+     */
+    public V join(K key) throws InterruptedException {
+        while (true) {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+            if (existing == null)
+                return null;
+
+            V value;
+            try {
+                value = existing.get();
+            } catch (ExecutionException ex) {
+                value = null;
+            }
+
+            if (value != null)
+                return value;
+        }
+    }
+
+    /**
+     * Completes the flight of the leader, a null value lets one of the callers
+     * waiting become the leader
+     */
+    public void land(K key, V value) {
+        CompletableFuture<V> flight = flights.remove(key);
+        if (flight != null)
+            flight.complete(value);
+    }
+
+    public boolean isInFlight(K key) {
+        return flights.containsKey(key);
+    }
+
+    public int size() {
+        return flights.size();
+    }
+}
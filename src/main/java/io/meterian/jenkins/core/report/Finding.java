@@ -0,0 +1,56 @@
+package io.meterian.jenkins.core.report;
+
+import java.io.Serializable;
+
+/**
+ * An advisory reported by the client on one dependency.
+ */
+public class Finding implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String category;
+    private final String dependency;
+    private final String version;
+    private final String id;
+    private final String cve;
+    private final String severity;
+
+    public Finding(String category, String dependency, String version, String id, String cve, String severity) {
+        this.category = category;
+        this.dependency = dependency;
+        this.version = version;
+        this.id = id;
+        this.cve = cve;
+        this.severity = severity;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCve() {
+        return cve;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + category + " " + dependency + "@" + version + " " + (cve != null ? cve : id) + " " + severity + "]";
+    }
+}
@@ -0,0 +1,49 @@
+package io.meterian.jenkins.core.report;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The findings on the dependencies declared by one manifest, or by one
+ * language when the client does not say which manifest they come from.
+ */
+public class ManifestReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    String language;
+    String manifest;
+    private final List<Finding> findings = new ArrayList<>();
+
+    public ManifestReport(String language, String manifest) {
+        this.language = language;
+        this.manifest = manifest;
+    }
+
+    boolean sameAs(ManifestReport other) {
+        return Objects.equals(language, other.language) && Objects.equals(manifest, other.manifest);
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getManifest() {
+        return manifest;
+    }
+
+    public List<Finding> getFindings() {
+        return findings;
+    }
+
+    void add(Finding finding) {
+        findings.add(finding);
+    }
+
+    @Override
+    public String toString() {
+        return "[language=" + language + ", manifest=" + manifest + ", findings=" + findings.size() + "]";
+    }
+}
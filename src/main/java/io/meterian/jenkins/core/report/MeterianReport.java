@@ -0,0 +1,60 @@
+package io.meterian.jenkins.core.report;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of an analysis as reported by the client in its JSON report.
+ *
+ * Only up to a maximum number of findings is kept, see {@link ReportParser}:
+ * the others are just counted and the report is marked as truncated.
+ */
+public class MeterianReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    String project;
+    String branch;
+    String url;
+    final Map<String, Integer> scores = new LinkedHashMap<>();
+    final List<ManifestReport> manifests = new ArrayList<>();
+    int findingsCount;
+    boolean truncated;
+
+    public String getProject() {
+        return project;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, Integer> getScores() {
+        return scores;
+    }
+
+    public List<ManifestReport> getManifests() {
+        return manifests;
+    }
+
+    public int getFindingsCount() {
+        return findingsCount;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        return "[project=" + project + ", branch=" + branch + ", scores=" + scores + ", manifests=" + manifests.size()
+                + ", findings=" + findingsCount + (truncated ? " (truncated)" : "") + "]";
+    }
+}
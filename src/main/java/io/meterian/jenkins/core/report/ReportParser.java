@@ -0,0 +1,277 @@
+package io.meterian.jenkins.core.report;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads the JSON report written by the client with <code>--report-json</code>
+ * into a {@link MeterianReport}.
+ *
+ * The report is streamed token by token and never loaded as a whole, as on
+ * large repositories it can be several megabytes long: only the fields of
+ * interest are kept, everything else is skipped, and no more than a maximum
+ * number of findings is retained. Unknown fields and unexpected types are
+ * ignored, so that newer clients can add to the report without breaking us.
+ */
+public class ReportParser {
+
+    public static final int DEFAULT_MAX_FINDINGS = 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int maxFindings;
+
+    private MeterianReport report;
+    private int storedFindings;
+
+    public ReportParser() {
+        this(DEFAULT_MAX_FINDINGS);
+    }
+
+    public ReportParser(int maxFindings) {
+        this.maxFindings = maxFindings;
+    }
+
+    public MeterianReport parse(InputStream input) throws IOException {
+        report = new MeterianReport();
+        storedFindings = 0;
+
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(input, UTF_8));
+            if (reader.peek() != JsonToken.BEGIN_OBJECT)
+                throw new IOException("Unexpected report format, found " + reader.peek());
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                case "project":
+                case "pid":
+                    report.project = string(reader);
+                    break;
+                case "branch":
+                    report.branch = string(reader);
+                    break;
+                case "url":
+                case "reportUrl":
+                    report.url = string(reader);
+                    break;
+                case "scores":
+                    readScores(reader);
+                    break;
+                case "security":
+                case "stability":
+                case "licensing":
+                    readSection(reader, name);
+                    break;
+                default:
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (JsonParseException | IllegalStateException ex) {
+            throw new IOException("Invalid report: " + ex.getMessage(), ex);
+        }
+
+        return report;
+    }
+
+    private void readScores(JsonReader reader) throws IOException {
+        if (!begin(reader, JsonToken.BEGIN_OBJECT))
+            return;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            Integer score = integer(reader);
+            if (score != null)
+                report.scores.put(name, score);
+        }
+        reader.endObject();
+    }
+
+    private void readSection(JsonReader reader, String category) throws IOException {
+        if (!begin(reader, JsonToken.BEGIN_OBJECT))
+            return;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "score":
+                Integer score = integer(reader);
+                if (score != null)
+                    report.scores.put(category, score);
+                break;
+            case "assessments":
+                if (begin(reader, JsonToken.BEGIN_ARRAY)) {
+                    reader.beginArray();
+                    while (reader.hasNext())
+                        readAssessment(reader, category);
+                    reader.endArray();
+                }
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readAssessment(JsonReader reader, String category) throws IOException {
+        if (!begin(reader, JsonToken.BEGIN_OBJECT))
+            return;
+
+        ManifestReport manifest = new ManifestReport(null, null);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "language":
+                manifest.language = string(reader);
+                break;
+            case "manifest":
+            case "file":
+                manifest.manifest = string(reader);
+                break;
+            case "reports":
+                if (begin(reader, JsonToken.BEGIN_ARRAY)) {
+                    reader.beginArray();
+                    while (reader.hasNext())
+                        readDependencyReport(reader, category, manifest);
+                    reader.endArray();
+                }
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        merge(manifest);
+    }
+
+    private void readDependencyReport(JsonReader reader, String category, ManifestReport manifest) throws IOException {
+        if (!begin(reader, JsonToken.BEGIN_OBJECT))
+            return;
+
+        String dependency = null;
+        String version = null;
+        List<String[]> advices = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "dependency":
+                if (begin(reader, JsonToken.BEGIN_OBJECT)) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        if ("name".equals(name))
+                            dependency = string(reader);
+                        else if ("version".equals(name))
+                            version = string(reader);
+                        else
+                            reader.skipValue();
+                    }
+                    reader.endObject();
+                }
+                break;
+            case "advices":
+                if (begin(reader, JsonToken.BEGIN_ARRAY)) {
+                    reader.beginArray();
+                    while (reader.hasNext())
+                        readAdvice(reader, advices);
+                    reader.endArray();
+                }
+                break;
+            default:
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        for (String[] advice : advices)
+            manifest.add(new Finding(category, dependency, version, advice[0], advice[1], advice[2]));
+    }
+
+    private void readAdvice(JsonReader reader, List<String[]> advices) throws IOException {
+        if (!begin(reader, JsonToken.BEGIN_OBJECT))
+            return;
+
+        report.findingsCount++;
+        boolean keep = storedFindings < maxFindings;
+        if (keep)
+            storedFindings++;
+        else
+            report.truncated = true;
+
+        String[] advice = new String[3];
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (keep && "id".equals(name))
+                advice[0] = string(reader);
+            else if (keep && "cve".equals(name))
+                advice[1] = string(reader);
+            else if (keep && "severity".equals(name))
+                advice[2] = string(reader);
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
+
+        if (keep)
+            advices.add(advice);
+    }
+
+    private void merge(ManifestReport manifest) {
+        for (ManifestReport existing : report.manifests) {
+            if (existing.sameAs(manifest)) {
+                for (Finding finding : manifest.getFindings())
+                    existing.add(finding);
+                return;
+            }
+        }
+        report.manifests.add(manifest);
+    }
+
+    private static boolean begin(JsonReader reader, JsonToken expected) throws IOException {
+        if (reader.peek() == expected)
+            return true;
+
+        reader.skipValue();
+        return false;
+    }
+
+    private static String string(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+        case STRING:
+        case NUMBER:
+            return reader.nextString();
+        case BOOLEAN:
+            return String.valueOf(reader.nextBoolean());
+        default:
+            reader.skipValue();
+            return null;
+        }
+    }
+
+    private static Integer integer(JsonReader reader) throws IOException {
+        String value = string(reader);
+        if (value == null)
+            return null;
+
+        try {
+            return (int) Math.round(Double.parseDouble(value));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
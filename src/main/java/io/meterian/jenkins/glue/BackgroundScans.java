@@ -0,0 +1,128 @@
+package io.meterian.jenkins.glue;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.core.ScanPermits;
+
+/**
+ * The analyses started by <code>meterianStart</code> and not yet collected by
+ * <code>meterianAwait</code>, running on the {@link ScanExecutor}, where
+ * they wait for their permit, see {@link ScanPermits}.
+ *
+ * Scans are kept in memory only: when the build completes the ones still
+ * pending are cancelled and forgotten, so that nothing leaks across builds.
+ * As a scan may start well after its step returned, it checks that the build
+ * is still running and its workspace still reachable before launching the
+ * client.
+ */
+public class BackgroundScans {
+
+    private static final Logger log = LoggerFactory.getLogger(BackgroundScans.class);
+
+    static class Scan {
+        final String runId;
+        final CompletableFuture<Meterian.Result> result = new CompletableFuture<>();
+        Future<?> task;
+
+        Scan(String runId) {
+            this.runId = runId;
+        }
+    }
+
+    private static final Map<String, Scan> scans = new ConcurrentHashMap<>();
+
+    static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    static Scan start(String id, String runId, Callable<Meterian.Result> analysis) {
+        Scan scan = new Scan(runId);
+        scans.put(id, scan);
+        synchronized (scan) {
+            try {
+                scan.task = ScanExecutor.shared().submit(() -> {
+                    try {
+                        scan.result.complete(analysis.call());
+                    } catch (Throwable ex) {
+                        scan.result.completeExceptionally(ex);
+                    }
+                });
+            } catch (RuntimeException ex) {
+                // i.e. rejected as Jenkins is shutting down
+                scan.result.completeExceptionally(ex);
+            }
+        }
+
+        return scan;
+    }
+
+    static void checkStillValid(Run<?, ?> run, FilePath workspace) throws IOException, InterruptedException {
+        if (!run.isBuilding())
+            throw new AbortException("[meterian] The build completed before the background analysis could start");
+
+        Computer computer = workspace.toComputer();
+        if (computer == null || computer.isOffline() || !workspace.exists())
+            throw new AbortException("[meterian] The workspace " + workspace.getRemote() + " is no longer available, the background analysis was not started");
+    }
+
+    static Scan find(String id) {
+        return scans.get(id);
+    }
+
+    static void forget(String id) {
+        scans.remove(id);
+    }
+
+    static void cancel(String id) {
+        Scan scan = scans.remove(id);
+        if (scan != null)
+            cancel(scan);
+    }
+
+    static int size() {
+        return scans.size();
+    }
+
+    private static void cancel(Scan scan) {
+        synchronized (scan) {
+            scan.result.cancel(false);
+            if (scan.task != null)
+                scan.task.cancel(true);
+        }
+    }
+
+    @Extension
+    public static class Cleaner extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(Run<?, ?> run, TaskListener listener) {
+            String runId = run.getExternalizableId();
+            Iterator<Scan> pending = scans.values().iterator();
+            while (pending.hasNext()) {
+                Scan scan = pending.next();
+                if (runId.equals(scan.runId)) {
+                    log.info("Cancelling background Meterian analysis never awaited by {}", runId);
+                    pending.remove();
+                    cancel(scan);
+                }
+            }
+        }
+    }
+}
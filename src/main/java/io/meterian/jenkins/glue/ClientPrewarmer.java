@@ -0,0 +1,65 @@
+package io.meterian.jenkins.glue;
+
+import static io.meterian.jenkins.glue.Facade.getConfiguration;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import io.meterian.jenkins.glue.MeterianPlugin.Configuration;
+import io.meterian.jenkins.glue.launchers.ClientDistributor;
+import io.meterian.jenkins.io.ClientDigest;
+import io.meterian.jenkins.io.ClientDownloader;
+import io.meterian.jenkins.io.SharedHttpClient;
+import jenkins.model.Jenkins;
+
+/**
+ * Ships the Meterian client to every agent as soon as it connects, so that
+ * the first build running there does not have to wait for the transfer.
+ * The client already held by the controller is shipped as it is, without
+ * checking for a newer one.
+ */
+@Extension
+public class ClientPrewarmer extends ComputerListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientPrewarmer.class);
+
+    @Override
+    public void onOnline(Computer computer, TaskListener listener) {
+        if (computer instanceof Jenkins.MasterComputer)
+            return;
+
+        Computer.threadPoolForRemoting.submit(() -> prewarm(computer, listener));
+    }
+
+    private void prewarm(Computer computer, TaskListener listener) {
+        try {
+            File clientJar = ClientDownloader.JAR_FILE;
+            if (!ClientDigest.verify(clientJar)) {
+                Configuration config = getConfiguration();
+                clientJar = new ClientDownloader(
+                        SharedHttpClient.get(config),
+                        config.getMeterianBaseUrl(),
+                        listener.getLogger(),
+                        config.getClientRefreshMinutes()).load();
+            }
+
+            if (computer.getChannel() == null) {
+                log.debug("Agent {} went offline before the client could be shipped", computer.getName());
+                return;
+            }
+
+            new ClientDistributor(listener.getLogger()).distribute(computer.getChannel(), clientJar);
+            log.info("Meterian client ready on agent {}", computer.getName());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.warn("Unable to ship the Meterian client to agent {}", computer.getName(), ex);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package io.meterian.jenkins.glue;
+
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.glue.clientrunners.ClientRunner;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Waits for an analysis started by <code>meterianStart</code> and breaks the
+ * build when it failed, exactly as the <code>meterian</code> step would have
+ * done. The pipeline thread is not blocked while waiting.
+ */
+public class MeterianAwaitStep extends Step {
+
+    private final MeterianScan scan;
+
+    @DataBoundConstructor
+    public MeterianAwaitStep(MeterianScan scan) {
+        this.scan = scan;
+    }
+
+    public MeterianScan getScan() {
+        return scan;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(scan, context);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "meterianAwait";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Wait for a Meterian analysis started in background";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return new HashSet<>(Arrays.asList(TaskListener.class, Run.class));
+        }
+    }
+
+    public static class Execution extends StepExecution {
+
+        private final MeterianScan scan;
+
+        private transient boolean completed;
+
+        Execution(MeterianScan scan, StepContext context) {
+            super(context);
+            this.scan = scan;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            if (scan == null)
+                throw new AbortException("[meterian] No analysis to wait for, please pass the value returned by 'meterianStart'");
+
+            attach();
+            return false;
+        }
+
+        @Override
+        public void onResume() {
+            try {
+                attach();
+            } catch (Exception ex) {
+                complete(ex);
+            }
+        }
+
+        @Override
+        public void stop(Throwable cause) throws Exception {
+            complete(cause);
+            BackgroundScans.cancel(scan.getId());
+        }
+
+        @Override
+        public String getStatus() {
+            BackgroundScans.Scan running = BackgroundScans.find(scan.getId());
+            return running == null ? "not running" : running.result.isDone() ? "completed" : "waiting for " + scan;
+        }
+
+        private void attach() throws Exception {
+            BackgroundScans.Scan running = BackgroundScans.find(scan.getId());
+            if (running != null) {
+                running.result.whenComplete((result, failure) -> {
+                    BackgroundScans.forget(scan.getId());
+                    if (failure != null)
+                        complete(unwrap(failure));
+                    else
+                        evaluate(result);
+                });
+                return;
+            }
+
+            // not in memory anymore (i.e. Jenkins restarted): the analysis may
+            // have completed before, in which case its report is on the build
+            Run<?, ?> run = getContext().get(Run.class);
+            for (MeterianReportAction action : run.getActions(MeterianReportAction.class)) {
+                if (scan.getId().equals(action.getScanId())) {
+                    evaluate(action.toResult());
+                    return;
+                }
+            }
+
+            complete(new AbortException("[meterian] The background analysis " + scan.getId() + " was lost, possibly as Jenkins restarted while it was running"));
+        }
+
+        private void evaluate(Meterian.Result result) {
+            try {
+                PrintStream jenkinsLogger = getContext().get(TaskListener.class).getLogger();
+                new ClientRunner(null, getContext(), jenkinsLogger).evaluate(result);
+                complete(null);
+            } catch (Throwable ex) {
+                complete(ex);
+            }
+        }
+
+        private static Throwable unwrap(Throwable failure) {
+            if (failure instanceof CompletionException && failure.getCause() != null)
+                failure = failure.getCause();
+            if (failure instanceof CancellationException)
+                return new AbortException("[meterian] The background analysis was cancelled");
+            return failure;
+        }
+
+        private synchronized void complete(Throwable failure) {
+            if (completed)
+                return;
+
+            completed = true;
+            if (failure == null)
+                getContext().onSuccess(null);
+            else
+                getContext().onFailure(failure);
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,34 @@
+package io.meterian.jenkins.glue;
+
+import static io.meterian.jenkins.glue.Facade.getConfiguration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import io.meterian.jenkins.io.ClientDownloader;
+import io.meterian.jenkins.io.SharedHttpClient;
+
+/**
+ * Ties the resources shared by all the builds to the Jenkins lifecycle.
+ */
+public class MeterianLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(MeterianLifecycle.class);
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void startup() {
+        log.info("Starting Meterian plugin shared resources");
+        SharedHttpClient.get(getConfiguration());
+    }
+
+    @Terminator
+    public static void shutdown() {
+        log.info("Stopping Meterian plugin shared resources");
+        ScanExecutor.shutdown();
+        ClientDownloader.shutdown();
+        SharedHttpClient.shutdown();
+    }
+}
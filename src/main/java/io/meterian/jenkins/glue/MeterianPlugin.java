@@ -6,13 +6,17 @@ import static io.meterian.jenkins.io.HttpClientFactory.makeUrl;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.URI;
+import java.util.List;
 
 import javax.servlet.ServletException;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.verb.POST;
@@ -29,12 +33,21 @@ import hudson.model.FreeStyleProject;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import hudson.util.Secret;
 import io.meterian.jenkins.autofixfeature.AutoFixFeature;
 import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.core.ProcessPriority;
+import io.meterian.jenkins.core.ScanPermits;
+import io.meterian.jenkins.core.Severity;
 import io.meterian.jenkins.glue.clientrunners.ClientRunner;
+import io.meterian.jenkins.glue.executors.AnalysisShortcut;
+import io.meterian.jenkins.glue.executors.SharedResults;
 import io.meterian.jenkins.glue.executors.StandardExecutor;
+import io.meterian.jenkins.glue.launchers.JenkinsClientLauncher;
+import io.meterian.jenkins.io.ClientDownloader;
 import io.meterian.jenkins.io.HttpClientFactory;
+import io.meterian.jenkins.io.SharedHttpClient;
 import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 
@@ -48,6 +61,10 @@ public class MeterianPlugin extends Builder {
     static final Logger log = LoggerFactory.getLogger(MeterianPlugin.class);
 
     private final String args;
+    private Integer timeoutMinutes;
+    private Integer niceness;
+    private String ioClass;
+    private String slice;
 
     @DataBoundConstructor
     public MeterianPlugin(String args) {
@@ -59,6 +76,42 @@ public class MeterianPlugin extends Builder {
         return args;
     }
 
+    public Integer getTimeoutMinutes() {
+        return timeoutMinutes;
+    }
+
+    @DataBoundSetter
+    public void setTimeoutMinutes(Integer timeoutMinutes) {
+        this.timeoutMinutes = timeoutMinutes;
+    }
+
+    public Integer getNiceness() {
+        return niceness;
+    }
+
+    @DataBoundSetter
+    public void setNiceness(Integer niceness) {
+        this.niceness = niceness;
+    }
+
+    public String getIoClass() {
+        return ioClass;
+    }
+
+    @DataBoundSetter
+    public void setIoClass(String ioClass) {
+        this.ioClass = ioClass;
+    }
+
+    public String getSlice() {
+        return slice;
+    }
+
+    @DataBoundSetter
+    public void setSlice(String slice) {
+        this.slice = slice;
+    }
+
 
     @Override
     public boolean perform(AbstractBuild build, Launcher launcher, BuildListener listener)
@@ -72,15 +125,19 @@ public class MeterianPlugin extends Builder {
                 configuration,
                 environment,
                 jenkinsLogger,
-                args);
+                args,
+                new JenkinsClientLauncher(launcher, build.getWorkspace(), listener));
 
         if (! client.requiredEnvironmentVariableHasBeenSet()) {
             return false;
         }
 
         client.prepare("--interactive=false");
+        client.setTimeoutInMinutes(timeoutMinutes);
+        client.setProcessPriority(ProcessPriority.of(niceness, ioClass, slice));
 
         ClientRunner clientRunner = new ClientRunner(client, build, jenkinsLogger);
+        clientRunner.bindTo(build, environment);
         AutoFixFeature autoFixFeature = new AutoFixFeature(
                 configuration,
                 environment,
@@ -88,7 +145,10 @@ public class MeterianPlugin extends Builder {
                 jenkinsLogger
         );
         try {
-            new StandardExecutor(clientRunner, autoFixFeature).run(client);
+            List<AnalysisShortcut> shortcuts = AnalysisShortcut.configured(configuration, build, build.getWorkspace(), client, jenkinsLogger);
+            new StandardExecutor(clientRunner, autoFixFeature, shortcuts).run(client);
+        } catch (InterruptedException ex) {
+            throw ex;
         } catch (Exception ex) {
             log.warn("Unexpected", ex);
             jenkinsLogger.println("Unexpected exception!");
@@ -103,9 +163,27 @@ public class MeterianPlugin extends Builder {
 
         private static final String DEFAULT_BASE_URL = "https://www.meterian.io";
         private static final int ONE_MINUTE = 60 * 1000;
+        // the client used to wait up to 5 minutes for its output, then up to 5
+        // more for the process, so analyses could run for 10 minutes
+        public static final int DEFAULT_CLIENT_TIMEOUT_IN_MINUTES = 10;
 
         private String url;
         private String jvmArgs;
+        private boolean warmStart;
+        private boolean quickJit;
+        private boolean autoSizeClient;
+        private Integer clientNiceness;
+        private String clientIoClass;
+        private String clientSlice;
+        private boolean lowPriorityInBackground;
+        private boolean skipUnchangedManifests;
+        private boolean reuseUnchangedDependencies;
+        private boolean shareResults;
+        private Integer clientRefreshMinutes;
+        private String failFastSeverity;
+        private Integer clientTimeoutMinutes;
+        private Integer maxConcurrentScans;
+        private Integer maxConcurrentScansPerNode;
         private Secret meterianAPIToken;
 
         private String meterianGithubUser;
@@ -114,6 +192,7 @@ public class MeterianPlugin extends Builder {
 
         public Configuration() {
             load();
+            applyScanLimits();
         }
 
         public Configuration(String url,
@@ -168,6 +247,27 @@ public class MeterianPlugin extends Builder {
             url = computeFinalUrl(formData.getString("url"));
             meterianAPIToken = toSecret(computeFinalToken(formData.getString("meterianAPIToken")));
             jvmArgs = parseEmpty(formData.getString("jvmArgs"), "");
+            warmStart = formData.optBoolean("warmStart");
+            quickJit = formData.optBoolean("quickJit");
+            autoSizeClient = formData.optBoolean("autoSizeClient");
+            clientNiceness = parseNiceness(formData.optString("clientNiceness"));
+            clientIoClass = parseEmpty(formData.optString("clientIoClass"), null);
+            clientSlice = parseEmpty(formData.optString("clientSlice"), null);
+            try {
+                ProcessPriority.of(clientNiceness, clientIoClass, clientSlice);
+            } catch (IllegalArgumentException ex) {
+                throw new FormException(ex.getMessage(), "clientSlice");
+            }
+            lowPriorityInBackground = formData.optBoolean("lowPriorityInBackground");
+            skipUnchangedManifests = formData.optBoolean("skipUnchangedManifests");
+            reuseUnchangedDependencies = formData.optBoolean("reuseUnchangedDependencies");
+            shareResults = formData.optBoolean("shareResults");
+            clientRefreshMinutes = parseInt(formData.optString("clientRefreshMinutes"), ClientDownloader.DEFAULT_FRESHNESS_IN_MINUTES);
+            failFastSeverity = parseEmpty(formData.optString("failFastSeverity"), null);
+            clientTimeoutMinutes = parseInt(formData.optString("clientTimeoutMinutes"), DEFAULT_CLIENT_TIMEOUT_IN_MINUTES);
+            maxConcurrentScans = parseInt(formData.optString("maxConcurrentScans"), ScanPermits.DEFAULT_MAX_GLOBAL);
+            maxConcurrentScansPerNode = parseInt(formData.optString("maxConcurrentScansPerNode"), ScanPermits.DEFAULT_MAX_PER_NODE);
+            applyScanLimits();
             meterianGithubUser = parseEmpty(formData.getString("meterianGithubUser"), "");
             meterianGithubEmail = parseEmpty(formData.getString("meterianGithubEmail"), "");
             meterianGithubToken = toSecret(parseEmpty(formData.getString("meterianGithubToken"), ""));
@@ -190,6 +290,94 @@ public class MeterianPlugin extends Builder {
             return jvmArgs;
         }
 
+        public boolean isWarmStart() {
+            return warmStart;
+        }
+
+        public boolean isQuickJit() {
+            return quickJit;
+        }
+
+        public boolean isAutoSizeClient() {
+            return autoSizeClient;
+        }
+
+        public Integer getClientNiceness() {
+            return clientNiceness;
+        }
+
+        public String getClientIoClass() {
+            return clientIoClass;
+        }
+
+        public String getClientSlice() {
+            return clientSlice;
+        }
+
+        public boolean isLowPriorityInBackground() {
+            return lowPriorityInBackground;
+        }
+
+        public ProcessPriority getClientProcessPriority() {
+            return ProcessPriority.of(clientNiceness, clientIoClass, clientSlice);
+        }
+
+        public ListBoxModel doFillClientIoClassItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("Default", "");
+            for (ProcessPriority.IoClass ioClass : ProcessPriority.IoClass.values())
+                items.add(ioClass.label(), ioClass.label());
+            return items;
+        }
+
+        public ListBoxModel doFillIoClassItems() {
+            return doFillClientIoClassItems();
+        }
+
+        public boolean isSkipUnchangedManifests() {
+            return skipUnchangedManifests;
+        }
+
+        public boolean isReuseUnchangedDependencies() {
+            return reuseUnchangedDependencies;
+        }
+
+        public boolean isShareResults() {
+            return shareResults;
+        }
+
+        public int getClientRefreshMinutes() {
+            return clientRefreshMinutes == null ? ClientDownloader.DEFAULT_FRESHNESS_IN_MINUTES : clientRefreshMinutes;
+        }
+
+        public int getClientTimeoutMinutes() {
+            return (clientTimeoutMinutes == null || clientTimeoutMinutes <= 0) ? DEFAULT_CLIENT_TIMEOUT_IN_MINUTES : clientTimeoutMinutes;
+        }
+
+        public int getMaxConcurrentScans() {
+            return maxConcurrentScans == null ? ScanPermits.DEFAULT_MAX_GLOBAL : maxConcurrentScans;
+        }
+
+        public int getMaxConcurrentScansPerNode() {
+            return maxConcurrentScansPerNode == null ? ScanPermits.DEFAULT_MAX_PER_NODE : maxConcurrentScansPerNode;
+        }
+
+        private void applyScanLimits() {
+            ScanPermits.shared().setLimits(getMaxConcurrentScans(), getMaxConcurrentScansPerNode());
+        }
+
+        public String getFailFastSeverity() {
+            return failFastSeverity;
+        }
+
+        public ListBoxModel doFillFailFastSeverityItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("Disabled", "");
+            for (Severity severity : Severity.values())
+                items.add(severity.name(), severity.name());
+            return items;
+        }
+
         public String getMeterianAPIToken() {
             return toPlainText(meterianAPIToken);
         }
@@ -212,6 +400,24 @@ public class MeterianPlugin extends Builder {
             return toPlainText(meterianGithubToken);
         }
 
+        public String getHttpPoolStats() {
+            PoolStats stats = SharedHttpClient.stats();
+            return String.format("leased: %d, pending: %d, available: %d (max %d)",
+                    stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+        }
+
+        public String getScanExecutorStats() {
+            return ScanExecutor.stats();
+        }
+
+        public String getResultStoreStats() {
+            return SharedResults.store().stats() + ", in progress: " + SharedResults.inFlight();
+        }
+
+        public String getScanPermitStats() {
+            return ScanPermits.shared().stats();
+        }
+
         public String getMeterianBaseUrl() {
             return parseEmpty(url, DEFAULT_BASE_URL);
         }
@@ -229,7 +435,7 @@ public class MeterianPlugin extends Builder {
             log.info("The url to verify is [{}], the token is [{}]", apiUrl, (apiToken == null ? "null" : "valid"));
 
             try {
-                HttpClient client = new HttpClientFactory().newHttpClient(this);
+                HttpClient client = SharedHttpClient.get(this);
                 HttpGet request = new HttpGet(new URI(makeUrl(apiUrl, "/api/v1/accounts/me")));
                 if (apiToken != null) {
                     log.info("Using auth token");
@@ -237,11 +443,15 @@ public class MeterianPlugin extends Builder {
                 }
 
                 HttpResponse response = client.execute(request);
-                log.info("{}: {}", apiUrl, response);
-                if (response.getStatusLine().getStatusCode() == 200) {
-                    return FormValidation.ok("Success - connection to the Meterian API verified.");
-                } else {
-                    return FormValidation.error("Failed - status: " + response.getStatusLine());
+                try {
+                    log.info("{}: {}", apiUrl, response);
+                    if (response.getStatusLine().getStatusCode() == 200) {
+                        return FormValidation.ok("Success - connection to the Meterian API verified.");
+                    } else {
+                        return FormValidation.error("Failed - status: " + response.getStatusLine());
+                    }
+                } finally {
+                    EntityUtils.consumeQuietly(response.getEntity());
                 }
             } catch (Exception e) {
                 log.error("Unexpected", e);
@@ -263,6 +473,22 @@ public class MeterianPlugin extends Builder {
             return (text == null || text.trim().isEmpty()) ? defval : text;
         }
 
+        private Integer parseNiceness(String text) {
+            try {
+                return Math.max(0, Math.min(ProcessPriority.MAX_NICENESS, Integer.parseInt(text.trim())));
+            } catch (Exception any) {
+                return null;
+            }
+        }
+
+        private int parseInt(String text, int defval) {
+            try {
+                return Math.max(0, Integer.parseInt(text.trim()));
+            } catch (Exception any) {
+                return defval;
+            }
+        }
+
         @Override
         public int getHttpConnectTimeout() {
             return ONE_MINUTE;
@@ -0,0 +1,190 @@
+package io.meterian.jenkins.glue;
+
+import java.net.URI;
+import java.util.Objects;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.core.report.MeterianReport;
+
+/**
+ * Keeps the outcome of the last Meterian analysis on the build, so that it can
+ * be read by later steps, i.e. <code>currentBuild.rawBuild.getAction(MeterianReportAction)</code>,
+ * without running the analysis again.
+ *
+ * A build holds one action per background analysis, keyed by its scan id,
+ * plus one for the last analysis run in the foreground.
+ */
+public class MeterianReportAction extends InvisibleAction {
+
+    private final int exitCode;
+    private final String reportUrl;
+    private final MeterianReport report;
+    private final String blockingFinding;
+    private final String scanId;
+    private final long scannedAt;
+    private final String clientSizing;
+    private final boolean buildUnsuccessful;
+    private final boolean timedOut;
+    private String commit;
+    private String fingerprint;
+    private boolean carriedForward;
+
+    public MeterianReportAction(Meterian.Result result) {
+        this(result, null);
+    }
+
+    public MeterianReportAction(Meterian.Result result, String scanId) {
+        this(result, scanId, System.currentTimeMillis());
+    }
+
+    private MeterianReportAction(Meterian.Result result, String scanId, long scannedAt) {
+        this.scanId = scanId;
+        this.exitCode = result.exitCode;
+        this.reportUrl = result.reportUrl == null ? null : result.reportUrl.toString();
+        this.report = result.report;
+        this.blockingFinding = result.blockingFinding;
+        this.clientSizing = result.clientSizing;
+        this.buildUnsuccessful = result.buildUnsuccessful;
+        this.timedOut = result.timedOut;
+        this.scannedAt = scannedAt;
+    }
+
+    /**
+     * Rebuilds the outcome of an analysis run at the given time, i.e. by
+     * another job
+     */
+    public static MeterianReportAction restored(Meterian.Result result, long scannedAt) {
+        return new MeterianReportAction(result, null, scannedAt);
+    }
+
+    private MeterianReportAction(MeterianReportAction source) {
+        this.scanId = null;
+        this.exitCode = source.exitCode;
+        this.reportUrl = source.reportUrl;
+        this.report = source.report;
+        this.blockingFinding = source.blockingFinding;
+        this.scannedAt = source.scannedAt;
+        this.clientSizing = source.clientSizing;
+        this.buildUnsuccessful = source.buildUnsuccessful;
+        this.timedOut = source.timedOut;
+        this.commit = source.commit;
+        this.fingerprint = source.fingerprint;
+        this.carriedForward = true;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getReportUrl() {
+        return reportUrl;
+    }
+
+    public MeterianReport getReport() {
+        return report;
+    }
+
+    public String getBlockingFinding() {
+        return blockingFinding;
+    }
+
+    /**
+     * The id of the background analysis, see {@link MeterianStartStep}, null
+     * for the analyses run by the <code>meterian</code> step
+     */
+    public String getScanId() {
+        return scanId;
+    }
+
+    /**
+     * The commit analysed, when the workspace is a git repository, used to
+     * skip the analysis of later builds that did not change any manifest
+     */
+    public String getCommit() {
+        return commit;
+    }
+
+    public void setCommit(String commit) {
+        this.commit = commit;
+    }
+
+    /**
+     * Identifies the dependencies analysed together with the client and its
+     * arguments, see {@link io.meterian.jenkins.glue.executors.DependencyCache}
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * How the client JVM was sized for the node, null when it was not, see
+     * {@link io.meterian.jenkins.core.ClientSizing}
+     */
+    public String getClientSizing() {
+        return clientSizing;
+    }
+
+    public long getScannedAt() {
+        return scannedAt;
+    }
+
+    /**
+     * True when the analysis was skipped on this build and the outcome is
+     * the one of a previous build
+     */
+    public boolean isCarriedForward() {
+        return carriedForward;
+    }
+
+    /**
+     * True when the analysis ran to the end and its outcome can be reused by
+     * later builds, see {@link Meterian.Result#isComplete()}
+     */
+    public boolean isComplete() {
+        return toResult().isComplete();
+    }
+
+    /**
+     * The report of the analysis the <code>meterian</code> step actually ran
+     * on the build, if any: neither a background analysis nor an outcome
+     * carried forward from an earlier build
+     */
+    public static MeterianReportAction analysedBy(Run<?, ?> run) {
+        for (MeterianReportAction action : run.getActions(MeterianReportAction.class))
+            if (action.scanId == null && !action.carriedForward)
+                return action;
+        return null;
+    }
+
+    /**
+     * Attaches the action to the build, replacing the one of the same scan
+     */
+    public static void attachTo(Run<?, ?> run, MeterianReportAction action) {
+        for (MeterianReportAction existing : run.getActions(MeterianReportAction.class))
+            if (Objects.equals(existing.scanId, action.scanId))
+                run.removeAction(existing);
+        run.addAction(action);
+    }
+
+    public MeterianReportAction carriedForward() {
+        return new MeterianReportAction(this);
+    }
+
+    public Meterian.Result toResult() {
+        Meterian.Result result = new Meterian.Result();
+        result.exitCode = exitCode;
+        result.reportUrl = reportUrl == null ? null : URI.create(reportUrl);
+        result.report = report;
+        result.blockingFinding = blockingFinding;
+        result.clientSizing = clientSizing;
+        result.buildUnsuccessful = buildUnsuccessful;
+        result.timedOut = timedOut;
+        return result;
+    }
+}
@@ -0,0 +1,34 @@
+package io.meterian.jenkins.glue;
+
+import java.io.Serializable;
+
+/**
+ * The handle returned by <code>meterianStart</code>, to be passed to
+ * <code>meterianAwait</code>. It only carries identifiers, so that it can be
+ * safely stored in the pipeline program state.
+ */
+public class MeterianScan implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final String runId;
+
+    public MeterianScan(String id, String runId) {
+        this.id = id;
+        this.runId = runId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    @Override
+    public String toString() {
+        return "MeterianScan[" + id + "]";
+    }
+}
@@ -0,0 +1,160 @@
+package io.meterian.jenkins.glue;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.core.ProcessPriority;
+import io.meterian.jenkins.core.ScanPermits;
+import io.meterian.jenkins.glue.clientrunners.ClientRunner;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Starts an analysis in background and returns at once with a
+ * {@link MeterianScan} handle, so that the pipeline can build and test while
+ * the client runs. The build is gated later on by <code>meterianAwait</code>.
+ */
+public class MeterianStartStep extends Step {
+
+    private final String args;
+    private Integer timeoutMinutes;
+    private Integer niceness;
+    private String ioClass;
+    private String slice;
+
+    @DataBoundConstructor
+    public MeterianStartStep(String args) {
+        this.args = args;
+    }
+
+    public String getArgs() {
+        return args;
+    }
+
+    public Integer getTimeoutMinutes() {
+        return timeoutMinutes;
+    }
+
+    @DataBoundSetter
+    public void setTimeoutMinutes(Integer timeoutMinutes) {
+        this.timeoutMinutes = timeoutMinutes;
+    }
+
+    public Integer getNiceness() {
+        return niceness;
+    }
+
+    @DataBoundSetter
+    public void setNiceness(Integer niceness) {
+        this.niceness = niceness;
+    }
+
+    public String getIoClass() {
+        return ioClass;
+    }
+
+    @DataBoundSetter
+    public void setIoClass(String ioClass) {
+        this.ioClass = ioClass;
+    }
+
+    public String getSlice() {
+        return slice;
+    }
+
+    @DataBoundSetter
+    public void setSlice(String slice) {
+        this.slice = slice;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(args, timeoutMinutes, ProcessPriority.of(niceness, ioClass, slice), context);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "meterianStart";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Start a Meterian analysis in background";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return new HashSet<>(Arrays.asList(TaskListener.class, EnvVars.class, Run.class, FilePath.class, Launcher.class));
+        }
+    }
+
+    public static class Execution extends SynchronousNonBlockingStepExecution<MeterianScan> {
+
+        private final String args;
+        private final Integer timeoutMinutes;
+        private final ProcessPriority processPriority;
+
+        Execution(String args, Integer timeoutMinutes, ProcessPriority processPriority, StepContext context) {
+            super(context);
+            this.args = args;
+            this.timeoutMinutes = timeoutMinutes;
+            this.processPriority = processPriority;
+        }
+
+        @Override
+        protected MeterianScan run() throws Exception {
+            StepContext context = getContext();
+            Meterian client = MeterianStep.newClient(context, args, timeoutMinutes, processPriority);
+            if (client == null) {
+                throw new AbortException("[meterian] Unable to start the analysis, the Meterian API token is not set");
+            }
+
+            if (client.usesAutofix()) {
+                throw new AbortException("[meterian] The autofix feature cannot run in background, please use the 'meterian' step");
+            }
+
+            Run<?, ?> run = context.get(Run.class);
+            PrintStream jenkinsLogger = context.get(TaskListener.class).getLogger();
+
+            EnvVars environment = context.get(EnvVars.class);
+            ClientRunner clientRunner = new ClientRunner(client, context, jenkinsLogger);
+            clientRunner.bindTo(run, environment);
+
+            FilePath workspace = context.get(FilePath.class);
+            String id = BackgroundScans.newId();
+            BackgroundScans.start(id, run.getExternalizableId(), () -> {
+                Meterian.Result result;
+                try (ScanPermits.Permit permit = clientRunner.acquirePermit()) {
+                    // the step returned long ago: the build may have left the node
+                    BackgroundScans.checkStillValid(run, workspace);
+                    result = client.run();
+                }
+                MeterianReportAction.attachTo(run, new MeterianReportAction(result, id));
+                return result;
+            });
+
+            jenkinsLogger.println("[meterian] Analysis started in background: " + id);
+            return new MeterianScan(id, run.getExternalizableId());
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
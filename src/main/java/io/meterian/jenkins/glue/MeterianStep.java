@@ -1,41 +1,121 @@
 package io.meterian.jenkins.glue;
 
+import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
 import hudson.model.TaskListener;
 import io.meterian.jenkins.autofixfeature.AutoFixFeature;
 import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.core.ProcessPriority;
 import io.meterian.jenkins.glue.clientrunners.ClientRunner;
 import io.meterian.jenkins.glue.executors.GerritExecutor;
+import io.meterian.jenkins.glue.executors.AnalysisShortcut;
 import io.meterian.jenkins.glue.executors.MeterianExecutor;
 import io.meterian.jenkins.glue.executors.StandardExecutor;
+import io.meterian.jenkins.glue.launchers.JenkinsClientLauncher;
 import io.meterian.scm.gerrit.Gerrit;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.StepExecution;
-import org.jenkinsci.plugins.workflow.steps.SynchronousStepExecution;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import static io.meterian.jenkins.glue.Facade.getConfiguration;
 
 public class MeterianStep extends Step {
 
     private final String args;
+    private Integer timeoutMinutes;
+    private Integer niceness;
+    private String ioClass;
+    private String slice;
 
     @DataBoundConstructor
     public MeterianStep(String args) {
         this.args = args;
     }
 
+    public String getArgs() {
+        return args;
+    }
+
+    public Integer getTimeoutMinutes() {
+        return timeoutMinutes;
+    }
+
+    @DataBoundSetter
+    public void setTimeoutMinutes(Integer timeoutMinutes) {
+        this.timeoutMinutes = timeoutMinutes;
+    }
+
+    public Integer getNiceness() {
+        return niceness;
+    }
+
+    @DataBoundSetter
+    public void setNiceness(Integer niceness) {
+        this.niceness = niceness;
+    }
+
+    public String getIoClass() {
+        return ioClass;
+    }
+
+    @DataBoundSetter
+    public void setIoClass(String ioClass) {
+        this.ioClass = ioClass;
+    }
+
+    public String getSlice() {
+        return slice;
+    }
+
+    @DataBoundSetter
+    public void setSlice(String slice) {
+        this.slice = slice;
+    }
+
     @Override
     public StepExecution start(StepContext context) throws Exception {
-        return new Execution(args, context);
+        return new Execution(args, timeoutMinutes, ProcessPriority.of(niceness, ioClass, slice), context);
+    }
+
+    /**
+     * Builds a client ready to run on the node of the step, or returns null
+     * when the configuration does not allow to run it
+     */
+    static Meterian newClient(StepContext context, String args, Integer timeoutMinutes, ProcessPriority processPriority) throws Exception {
+        TaskListener listener = context.get(TaskListener.class);
+        Meterian client = Meterian.build(
+                getConfiguration(),
+                context.get(EnvVars.class),
+                listener.getLogger(),
+                args,
+                new JenkinsClientLauncher(
+                        context.get(Launcher.class),
+                        context.get(FilePath.class),
+                        listener));
+
+        if (! client.requiredEnvironmentVariableHasBeenSet()) {
+            return null;
+        }
+
+        client.prepare("--interactive=false");
+        client.setTimeoutInMinutes(timeoutMinutes);
+        client.setProcessPriority(processPriority);
+        return client;
     }
 
     @Extension
@@ -53,43 +133,100 @@ public class MeterianStep extends Step {
 
         @Override
         public Set<? extends Class<?>> getRequiredContext() {
-            return Collections.singleton(TaskListener.class);
+            return new HashSet<>(Arrays.asList(TaskListener.class, EnvVars.class, Run.class, FilePath.class, Launcher.class));
         }
     }
 
-    public static class Execution extends SynchronousStepExecution<Void> {
+    /**
+     * Runs the analysis on the {@link ScanExecutor} and completes the step from
+     * there, so that the pipeline thread is released as soon as it starts. The
+     * permit of the node is requested only when the client has to run, see
+     * {@link ClientRunner#execute()}, so that analyses skipped or reused never
+     * queue for a slot.
+     */
+    public static class Execution extends StepExecution {
 
         private final String args;
+        private final Integer timeoutMinutes;
+        private final ProcessPriority processPriority;
 
-        Execution(String message, StepContext context) throws IOException, InterruptedException {
+        private transient volatile Future<?> task;
+        private transient boolean completed;
+
+        Execution(String message, Integer timeoutMinutes, ProcessPriority processPriority, StepContext context) throws IOException, InterruptedException {
             super(context);
             this.args = message;
+            this.timeoutMinutes = timeoutMinutes;
+            this.processPriority = processPriority;
         }
 
         @Override
-        protected Void run() throws Exception {
-            PrintStream jenkinsLogger = getContext().get(TaskListener.class).getLogger();
-            EnvVars environment = getContext().get(EnvVars.class);
+        public boolean start() throws Exception {
+            try {
+                task = ScanExecutor.shared().submit(() -> {
+                    try {
+                        run();
+                        complete(null);
+                    } catch (Throwable ex) {
+                        complete(ex);
+                    }
+                });
+            } catch (RuntimeException ex) {
+                // i.e. rejected as Jenkins is shutting down
+                complete(ex);
+            }
+            return false;
+        }
 
-            MeterianPlugin.Configuration configuration = getConfiguration();
-            Meterian client = Meterian.build(
-                    configuration,
-                    environment,
-                    jenkinsLogger,
-                    args);
-
-            if (! client.requiredEnvironmentVariableHasBeenSet()) {
-                return null;
+        @Override
+        public void stop(Throwable cause) throws Exception {
+            // completes at once, even if the analysis was still queued: the
+            // interrupted analysis kills the client and is then ignored
+            complete(cause);
+            Future<?> running = task;
+            if (running != null)
+                running.cancel(true);
+        }
+
+        private synchronized void complete(Throwable failure) {
+            if (completed)
+                return;
+
+            completed = true;
+            if (failure == null)
+                getContext().onSuccess(null);
+            else
+                getContext().onFailure(failure);
+        }
+
+        @Override
+        public void onResume() {
+            getContext().onFailure(new AbortException("The Meterian analysis was lost as Jenkins restarted while it was running"));
+        }
+
+        @Override
+        public String getStatus() {
+            Future<?> running = task;
+            return running == null ? "not started" : running.isDone() ? "completed" : "running, scans " + ScanExecutor.stats();
+        }
+
+        private void run() throws Exception {
+            Meterian client = newClient(getContext(), args, timeoutMinutes, processPriority);
+            if (client == null) {
+                return;
             }
 
-            client.prepare("--interactive=false");
+            MeterianPlugin.Configuration configuration = getConfiguration();
+            EnvVars environment = getContext().get(EnvVars.class);
+            PrintStream jenkinsLogger = getContext().get(TaskListener.class).getLogger();
 
             MeterianExecutor executor;
             ClientRunner clientRunner =
                     new ClientRunner(client, getContext(), jenkinsLogger);
+            clientRunner.bindTo(getContext().get(Run.class), environment);
 
             if (Gerrit.isSupported(environment)) {
-                executor = new GerritExecutor(getContext());
+                executor = new GerritExecutor(getContext(), clientRunner);
             } else {
                 AutoFixFeature autoFixFeature = new AutoFixFeature(
                         configuration,
@@ -97,11 +234,12 @@ public class MeterianStep extends Step {
                         clientRunner,
                         jenkinsLogger
                 );
-                executor = new StandardExecutor(clientRunner, autoFixFeature);
+                List<AnalysisShortcut> shortcuts = AnalysisShortcut.configured(
+                        configuration, getContext().get(Run.class), getContext().get(FilePath.class), client, jenkinsLogger);
+                executor = new StandardExecutor(clientRunner, autoFixFeature, shortcuts);
             }
             
             executor.run(client);
-            return null;
         }
 
         private static final long serialVersionUID = 1L;
@@ -0,0 +1,57 @@
+package io.meterian.jenkins.glue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.meterian.common.system.NamedThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The threads on which the pipeline steps run their analyses, so that the
+ * pipeline executor threads are never blocked waiting for the client.
+ *
+ * The pool is bounded: when more analyses are requested at once, i.e. by
+ * many <code>parallel</code> branches, they wait in the queue.
+ */
+public class ScanExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(ScanExecutor.class);
+
+    public static final int DEFAULT_MAX_THREADS = 32;
+    private static final long KEEP_ALIVE_IN_SECONDS = 60L;
+
+    private static ThreadPoolExecutor shared;
+
+    public static synchronized ExecutorService shared() {
+        if (shared == null || shared.isShutdown()) {
+            shared = new ThreadPoolExecutor(DEFAULT_MAX_THREADS, DEFAULT_MAX_THREADS,
+                    KEEP_ALIVE_IN_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new NamedThreadFactory("meterian-scan-"));
+            shared.allowCoreThreadTimeOut(true);
+        }
+
+        return shared;
+    }
+
+    public static synchronized String stats() {
+        if (shared == null)
+            return "idle";
+
+        return String.format("active: %d, queued: %d (max %d)",
+                shared.getActiveCount(), shared.getQueue().size(), DEFAULT_MAX_THREADS);
+    }
+
+    public static synchronized void shutdown() {
+        if (shared == null)
+            return;
+
+        log.info("Shutting down scan executor, {}", stats());
+        shared.shutdownNow();
+        shared = null;
+    }
+}
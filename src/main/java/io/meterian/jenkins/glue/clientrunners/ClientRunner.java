@@ -1,8 +1,14 @@
 package io.meterian.jenkins.glue.clientrunners;
 
+import hudson.EnvVars;
 import hudson.model.AbstractBuild;
 import hudson.model.Result;
+import hudson.model.Run;
+import hudson.triggers.TimerTrigger;
 import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.core.ScanLanes;
+import io.meterian.jenkins.core.ScanPermits;
+import io.meterian.jenkins.glue.MeterianReportAction;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,10 +20,20 @@ import java.util.concurrent.Callable;
 public class ClientRunner {
     private static final Logger log = LoggerFactory.getLogger(ClientRunner.class);
 
+    private static final String DEFAULT_NODE = "master";
+
     private Meterian client;
     private PrintStream jenkinsLogger;
 
     private Callable<Void> setJenkinsBuildToBreak;
+    private Callable<Void> setJenkinsBuildToNotBuilt;
+    private Callable<Run> currentRun;
+
+    private String lane;
+    private long revision;
+    private String node = DEFAULT_NODE;
+    private ScanPermits.Priority priority = ScanPermits.Priority.NORMAL;
+    private MeterianReportAction attached;
 
     public ClientRunner(Meterian client,
                         AbstractBuild build,
@@ -26,6 +42,8 @@ public class ClientRunner {
         this.jenkinsLogger = jenkinsLogger;
 
         setJenkinsBuildToBreak = () -> { build.setResult(Result.FAILURE); return null; };
+        setJenkinsBuildToNotBuilt = () -> { build.setResult(Result.NOT_BUILT); return null; };
+        currentRun = () -> build;
     }
 
     public ClientRunner(Meterian client,
@@ -35,28 +53,177 @@ public class ClientRunner {
         this.jenkinsLogger = jenkinsLogger;
 
         setJenkinsBuildToBreak = () -> { context.setResult(Result.FAILURE); return null; };
+        setJenkinsBuildToNotBuilt = () -> { context.setResult(Result.NOT_BUILT); return null; };
+        currentRun = () -> context.get(Run.class);
+    }
+
+    /**
+     * Binds the analysis to the build: a newer build of the same job and
+     * branch supersedes it, and it waits for a permit on the node of the
+     * build with the priority of the build, see {@link #priorityOf(Run, EnvVars)},
+     * that also marks background analyses for the client
+     */
+    public void bindTo(Run run, EnvVars environment) {
+        node = nodeOf(environment);
+        priority = priorityOf(run, environment);
+        client.setBackground(priority == ScanPermits.Priority.BACKGROUND);
+
+        String branch = environment.get("BRANCH_NAME", environment.get("GIT_BRANCH"));
+        if (run == null || branch == null)
+            return;
+
+        lane = "branch:" + run.getParent().getFullName() + ":" + branch;
+        revision = run.getNumber();
+    }
+
+    private static String nodeOf(EnvVars environment) {
+        return environment.get("NODE_NAME", DEFAULT_NODE);
+    }
+
+    /**
+     * Gerrit and pull request verifications are interactive, scheduled builds
+     * run in background; <code>METERIAN_SCAN_PRIORITY</code> overrides both
+     */
+    static ScanPermits.Priority priorityOf(Run run, EnvVars environment) {
+        ScanPermits.Priority explicit = ScanPermits.Priority.parse(environment.get("METERIAN_SCAN_PRIORITY"));
+        if (explicit != null)
+            return explicit;
+
+        if (environment.containsKey("GERRIT_CHANGE_NUMBER") || environment.containsKey("CHANGE_ID") || environment.containsKey("ghprbPullId"))
+            return ScanPermits.Priority.INTERACTIVE;
+
+        if (run != null && run.getCause(TimerTrigger.TimerTriggerCause.class) != null)
+            return ScanPermits.Priority.BACKGROUND;
+
+        return ScanPermits.Priority.NORMAL;
+    }
+
+    /**
+     * Waits until the client can run, see {@link ScanPermits}, and lets it
+     * know how many clients share the node; the permit must be closed once
+     * the client completes
+     */
+    public ScanPermits.Permit acquirePermit() throws InterruptedException {
+        ScanPermits permits = ScanPermits.shared();
+        ScanPermits.Permit permit = permits.tryAcquire(node);
+        if (permit == null) {
+            jenkinsLogger.format("[meterian] Waiting for a free analysis slot on %s (%s priority, %s)%n",
+                    node, priority.name().toLowerCase(), permits.stats());
+            permit = permits.acquire(node, priority);
+        }
+
+        if (permit.getWaitedInMillis() > 0) {
+            String waitedMsg = String.format("[meterian] Analysis slot obtained after %d seconds", permit.getWaitedInMillis() / 1000);
+            log.info(waitedMsg);
+            jenkinsLogger.println(waitedMsg);
+        }
+        client.setConcurrentClients(permits.getRunning(node));
+        return permit;
     }
 
-    public int execute() {
+    public int execute() throws InterruptedException {
         int executionResult = -1;
+        attached = null;
+        ScanLanes.Ticket ticket = lane == null ? null : ScanLanes.shared().enter(lane, revision, client::stop);
         try {
-            Meterian.Result buildResult = client.run();
-            if (failedAnalysis(buildResult)) {
-                breakBuild();
+            if (superseded(ticket))
+                return executionResult;
 
-                String clientFailedMsg = String.format("Meterian client analysis failed with exit code %d", buildResult.exitCode);
-                log.error(clientFailedMsg);
-                jenkinsLogger.println(clientFailedMsg);
+            Meterian.Result buildResult;
+            try (ScanPermits.Permit permit = acquirePermit()) {
+                if (superseded(ticket))
+                    return executionResult;
+
+                buildResult = client.run();
             }
+            if (superseded(ticket))
+                return executionResult;
+
+            attached = attach(buildResult);
+            evaluate(buildResult);
             executionResult = buildResult.exitCode;
+        } catch (InterruptedException ex) {
+            String abortedMsg = "[meterian] Analysis aborted, the client was stopped";
+            log.warn(abortedMsg);
+            jenkinsLogger.println(abortedMsg);
+            throw ex;
         } catch (Exception ex) {
             log.warn("Unexpected", ex);
             jenkinsLogger.println("Unexpected exception!");
             ex.printStackTrace(jenkinsLogger);
+        } finally {
+            if (ticket != null)
+                ticket.close();
         }
         return executionResult;
     }
 
+    private boolean superseded(ScanLanes.Ticket ticket) throws Exception {
+        if (ticket == null || !ticket.isSuperseded())
+            return false;
+
+        setJenkinsBuildToNotBuilt.call();
+        String supersededMsg = String.format("[meterian] Analysis superseded by build #%d of the same branch, its outcome is ignored", ticket.getSupersededBy());
+        log.info(supersededMsg);
+        jenkinsLogger.println(supersededMsg);
+        return true;
+    }
+
+    /**
+     * Breaks the build when the analysis failed, also used on the results of
+     * the analyses run in background
+     */
+    public void evaluate(Meterian.Result buildResult) throws Exception {
+        if (buildResult.blockingFinding != null) {
+            breakBuild();
+
+            String blockingMsg = String.format("[meterian] Analysis stopped early, blocking finding: %s", buildResult.blockingFinding);
+            log.error(blockingMsg);
+            jenkinsLogger.println(blockingMsg);
+        } else if (failedAnalysis(buildResult)) {
+            breakBuild();
+
+            String clientFailedMsg = String.format("Meterian client analysis failed with exit code %d", buildResult.exitCode);
+            log.error(clientFailedMsg);
+            jenkinsLogger.println(clientFailedMsg);
+        }
+    }
+
+    /**
+     * Reuses the outcome of a previous analysis, including its failure, when
+     * the analysis of this build was skipped
+     */
+    public void reuse(MeterianReportAction previous) throws Exception {
+        Run run = currentRun.call();
+        if (run != null)
+            MeterianReportAction.attachTo(run, previous.carriedForward());
+
+        evaluate(previous.toResult());
+    }
+
+    /**
+     * The report attached to the build by the last {@link #execute()}, null
+     * when it attached none, i.e. because the analysis was superseded
+     */
+    public MeterianReportAction getAttached() {
+        return attached;
+    }
+
+    private MeterianReportAction attach(Meterian.Result buildResult) {
+        try {
+            Run run = currentRun.call();
+            if (run == null)
+                return null;
+
+            MeterianReportAction action = new MeterianReportAction(buildResult);
+            MeterianReportAction.attachTo(run, action);
+            return action;
+        } catch (Exception ex) {
+            log.warn("Unable to attach the Meterian report to the build", ex);
+            return null;
+        }
+    }
+
     private boolean failedAnalysis(Meterian.Result buildResult) {
         return buildResult.exitCode != 0;
     }
@@ -0,0 +1,45 @@
+package io.meterian.jenkins.glue.executors;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.glue.MeterianPlugin;
+import io.meterian.jenkins.glue.MeterianReportAction;
+
+/**
+ * A way to avoid running the client, reusing the outcome of an analysis that
+ * ran before when it is known that it would not change.
+ */
+public interface AnalysisShortcut {
+
+    /**
+     * Returns the outcome to reuse, null when the analysis has to run
+     */
+    MeterianReportAction reusable() throws InterruptedException;
+
+    /**
+     * Records what is needed to reuse the analysis just run, given the report
+     * it attached to the build; called also when the analysis failed or was
+     * aborted, with a null report when none was attached
+     */
+    void record(MeterianReportAction attached);
+
+    /**
+     * The shortcuts enabled in the configuration, cheapest first
+     */
+    static List<AnalysisShortcut> configured(MeterianPlugin.Configuration configuration, Run<?, ?> run, FilePath workspace, Meterian client, PrintStream logger) {
+        List<AnalysisShortcut> shortcuts = new ArrayList<>();
+        WorkspaceFingerprint fingerprint = new WorkspaceFingerprint(workspace, logger);
+        if (configuration.isSkipUnchangedManifests())
+            shortcuts.add(new ManifestChangeGate(run, workspace, logger));
+        if (configuration.isReuseUnchangedDependencies())
+            shortcuts.add(new DependencyCache(run, fingerprint, client, logger));
+        if (configuration.isShareResults())
+            shortcuts.add(new SharedResults(run, workspace, fingerprint, client, logger));
+        return shortcuts;
+    }
+}
@@ -0,0 +1,77 @@
+package io.meterian.jenkins.glue.executors;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import hudson.model.Run;
+import io.meterian.jenkins.core.DependencyFingerprint;
+import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.glue.MeterianReportAction;
+import io.meterian.jenkins.io.ClientDigest;
+
+/**
+ * Reuses the outcome of a recent analysis of the same job when the
+ * {@link DependencyFingerprint} of the workspace did not change, nor did the
+ * client or its arguments. Unlike the {@link ManifestChangeGate} this also
+ * catches manifests that changed without changing any dependency. Only
+ * analyses that completed are recorded and reused.
+ */
+public class DependencyCache implements AnalysisShortcut {
+
+    private final Run<?, ?> run;
+    private final WorkspaceFingerprint fingerprint;
+    private final Meterian client;
+    private final PrintStream logger;
+
+    private String key;
+
+    public DependencyCache(Run<?, ?> run, WorkspaceFingerprint fingerprint, Meterian client, PrintStream logger) {
+        this.run = run;
+        this.fingerprint = fingerprint;
+        this.client = client;
+        this.logger = logger;
+    }
+
+    @Override
+    public MeterianReportAction reusable() throws InterruptedException {
+        key = key();
+        if (key == null)
+            return null;
+
+        Run<?, ?> previousRun = run.getPreviousBuild();
+        for (int i = 0; i < ManifestChangeGate.MAX_BUILDS && previousRun != null; i++, previousRun = previousRun.getPreviousBuild()) {
+            MeterianReportAction previous = MeterianReportAction.analysedBy(previousRun);
+            if (previous == null || !previous.isComplete() || !key.equals(previous.getFingerprint()))
+                continue;
+
+            if (System.currentTimeMillis() - previous.getScannedAt() > ManifestChangeGate.MAX_AGE_IN_MILLIS)
+                break;
+
+            logger.format("[meterian] The dependencies did not change since the analysis of %s, no analysis needed :)%n",
+                    previousRun.getFullDisplayName());
+            return previous;
+        }
+
+        return null;
+    }
+
+    @Override
+    public void record(MeterianReportAction action) {
+        if (action != null && key != null && action.isComplete())
+            action.setFingerprint(key);
+    }
+
+    private String key() throws InterruptedException {
+        String manifests = fingerprint.get();
+        if (manifests == null)
+            return null;
+
+        MessageDigest digest = ClientDigest.newDigest();
+        digest.update(manifests.getBytes(StandardCharsets.UTF_8));
+        digest.update(client.getClientVersion().getBytes(StandardCharsets.UTF_8));
+        for (String arg : client.getFinalClientArgs())
+            digest.update(("\u0000" + arg).getBytes(StandardCharsets.UTF_8));
+        return ClientDigest.hex(digest.digest());
+    }
+}
@@ -18,9 +18,14 @@ import com.meterian.common.io.SimpleFileCompare.Diff;
 import hudson.EnvVars;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import io.meterian.jenkins.core.ManifestDetector;
 import io.meterian.jenkins.core.Meterian;
 import io.meterian.jenkins.core.Meterian.Result;
+import io.meterian.jenkins.core.ScanLanes;
+import io.meterian.jenkins.core.ScanPermits;
+import io.meterian.jenkins.glue.clientrunners.ClientRunner;
 import io.meterian.scm.gerrit.Gerrit;
+import io.meterian.scm.gerrit.GerritChange;
 import io.meterian.scm.gerrit.GerritRoboComment;
 
 public class GerritExecutor implements MeterianExecutor {
@@ -30,8 +35,11 @@ public class GerritExecutor implements MeterianExecutor {
     private final EnvVars environment;
     private final PrintStream logger;
     private final Run<?,?> run;
+    private final ClientRunner clientRunner;
+    private final ManifestDetector manifestDetector = ManifestDetector.defaults();
 
-    public GerritExecutor(StepContext context) throws IOException, InterruptedException  {
+    public GerritExecutor(StepContext context, ClientRunner clientRunner) throws IOException, InterruptedException  {
+        this.clientRunner = clientRunner;
         environment = context.get(EnvVars.class);
         logger = context.get(TaskListener.class).getLogger();
         run = context.get(Run.class);
@@ -48,22 +56,48 @@ public class GerritExecutor implements MeterianExecutor {
             return;
         }
         
-        logger.println("[meterian] A critical change on a manifest file was detected - running Meterian analysis...");
+        GerritChange change = new GerritChange(environment, logger);
+        // prepared before entering the lane, so that a newer revision can stop it
         client.prepare("--interactive=false", "--autofix:readonly");
-        Result result = client.run();
+        try (ScanLanes.Ticket ticket = change.valid()
+                ? ScanLanes.shared().enter(Gerrit.laneOf(environment, change), change.getRevision(), client::stop)
+                : null) {
+            if (superseded(ticket))
+                return;
+
+            logger.println("[meterian] A critical change on a manifest file was detected - running Meterian analysis...");
+            Result result;
+            try (ScanPermits.Permit permit = clientRunner.acquirePermit()) {
+                if (superseded(ticket))
+                    return;
+
+                result = client.run();
+            }
+            if (superseded(ticket))
+                return;
+
+            logger.format("[meterian] Checking %d manifest file(s) %n", manifests.size());
+            generateRobotComments(gerrit, manifests, result, ticket);
+        }
+    }
+
+    private boolean superseded(ScanLanes.Ticket ticket) {
+        if (ticket == null || !ticket.isSuperseded())
+            return false;
 
-        logger.format("[meterian] Checking %d manifest file(s) %n", manifests.size());
-        generateRobotComments(gerrit, manifests, result);
+        logger.format("[meterian] Patchset %d was superseded by patchset %d, no robot comments will be posted %n",
+                ticket.getRevision(), ticket.getSupersededBy());
+        return true;
     }
 
-    private void generateRobotComments(Gerrit gerrit, List<String> manifests, Result result) throws IOException {
+    private void generateRobotComments(Gerrit gerrit, List<String> manifests, Result result, ScanLanes.Ticket ticket) throws IOException {
         List<GerritRoboComment> comments = new ArrayList<>();
 
         File root = new File(environment.get("WORKSPACE"));
         for (String manifest : manifests) {
             File fixFile = new File(root, manifest+".fix");
             if (!fixFile.exists()) {
-                logger.format("[meterian] No fixes found for file %s %n", manifest);
+                logger.format("[meterian] No fixes found for %s file %s %n", manifestDetector.ecosystemOf(manifest), manifest);
                 continue;
             }
             
@@ -75,7 +109,8 @@ public class GerritExecutor implements MeterianExecutor {
             comments.add(comment);
         }
         
-        gerrit.apply(comments);
+        if (!superseded(ticket))
+            gerrit.apply(comments);
     }
 
     private List<String> isGerritRunRequired(Gerrit gerrit, PrintStream logger) throws IOException {
@@ -86,9 +121,13 @@ public class GerritExecutor implements MeterianExecutor {
         if (files != null && files.size() > 0) {
             logger.format("[meterian] A change was detected on %d files %n", files.size());
             for (String path : files.keySet()) {
-                logger.format("[meterian] - %s %n", path);
-                if (path.contains("pom.xml"))
+                String ecosystem = manifestDetector.ecosystemOf(path);
+                if (ecosystem == null) {
+                    logger.format("[meterian] - %s %n", path);
+                } else {
+                    logger.format("[meterian] - %s (%s manifest) %n", path, ecosystem);
                     manifests.add(path);
+                }
             }
         }
         
@@ -0,0 +1,100 @@
+package io.meterian.jenkins.glue.executors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+/**
+ * The files changed in the git repository of a workspace since a given
+ * commit, computed on the node that holds the workspace.
+ */
+public class GitChanges implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String head;
+    private final Set<String> paths;
+
+    GitChanges(String head, Set<String> paths) {
+        this.head = head;
+        this.paths = paths;
+    }
+
+    /**
+     * The commit checked out, null when the workspace is not a git repository
+     */
+    public String getHead() {
+        return head;
+    }
+
+    /**
+     * The paths added, removed or modified, relative to the root of the
+     * repository, null when they are not known, i.e. when the base commit is
+     * not available in a shallow clone
+     */
+    public Set<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * The URL of the <code>origin</code> remote of the repository holding the
+     * workspace, null if the workspace is not a git repository or has none
+     */
+    public static String origin(File workspace) throws IOException {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(workspace);
+        if (builder.getGitDir() == null)
+            return null;
+
+        try (Repository repository = builder.build()) {
+            return repository.getConfig().getString("remote", "origin", "url");
+        }
+    }
+
+    public static GitChanges since(File workspace, String base) throws IOException {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(workspace);
+        if (builder.getGitDir() == null)
+            return new GitChanges(null, null);
+
+        try (Repository repository = builder.build()) {
+            ObjectId headId = repository.resolve("HEAD");
+            if (headId == null)
+                return new GitChanges(null, null);
+
+            String head = headId.name();
+            if (base == null)
+                return new GitChanges(head, null);
+            if (base.equals(head))
+                return new GitChanges(head, new TreeSet<>());
+
+            try (RevWalk walk = new RevWalk(repository);
+                 DiffFormatter formatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+                RevCommit baseCommit = walk.parseCommit(ObjectId.fromString(base));
+                RevCommit headCommit = walk.parseCommit(headId);
+
+                formatter.setRepository(repository);
+                Set<String> paths = new TreeSet<>();
+                for (DiffEntry entry : formatter.scan(baseCommit.getTree(), headCommit.getTree())) {
+                    if (!DiffEntry.DEV_NULL.equals(entry.getOldPath()))
+                        paths.add(entry.getOldPath());
+                    if (!DiffEntry.DEV_NULL.equals(entry.getNewPath()))
+                        paths.add(entry.getNewPath());
+                }
+                return new GitChanges(head, paths);
+            } catch (MissingObjectException | IllegalArgumentException unknownBase) {
+                return new GitChanges(head, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package io.meterian.jenkins.glue.executors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.remoting.VirtualChannel;
+import hudson.scm.ChangeLogSet;
+import io.meterian.jenkins.core.ManifestDetector;
+import io.meterian.jenkins.glue.MeterianReportAction;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.scm.RunWithSCM;
+
+/**
+ * Decides whether the analysis of a build can be skipped because no manifest
+ * or lockfile changed since the last analysis. The changes are computed with
+ * a git diff against the commit recorded by the last analysis and, when that
+ * is not possible, from the changesets of the build.
+ *
+ * Dependencies do not change but advisories do: an analysis older than a day
+ * is never reused, nor is one that did not complete.
+ */
+public class ManifestChangeGate implements AnalysisShortcut {
+
+    private static final Logger log = LoggerFactory.getLogger(ManifestChangeGate.class);
+
+    static final long MAX_AGE_IN_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    // each build looked at is loaded from disk: jobs never analysed, or not
+    // in a while, must not load their whole history
+    static final int MAX_BUILDS = 20;
+
+    private final Run<?, ?> run;
+    private final FilePath workspace;
+    private final PrintStream logger;
+    private final ManifestDetector manifestDetector = ManifestDetector.defaults();
+
+    private String head;
+
+    public ManifestChangeGate(Run<?, ?> run, FilePath workspace, PrintStream logger) {
+        this.run = run;
+        this.workspace = workspace;
+        this.logger = logger;
+    }
+
+    @Override
+    public MeterianReportAction reusable() throws InterruptedException {
+        Run<?, ?> previousRun = run.getPreviousBuild();
+        MeterianReportAction previous = null;
+        boolean immediate = true;
+        for (int i = 0; i < MAX_BUILDS && previousRun != null && previous == null; i++) {
+            previous = MeterianReportAction.analysedBy(previousRun);
+            // timed out or failed analyses are never reused
+            if (previous != null && !previous.isComplete())
+                previous = null;
+            if (previous == null) {
+                previousRun = previousRun.getPreviousBuild();
+                immediate = false;
+            }
+        }
+
+        GitChanges changes = diff(previous == null ? null : previous.getCommit());
+        head = changes.getHead();
+        if (previous == null) {
+            logger.println("[meterian] No previous analysis found, running Meterian analysis...");
+            return null;
+        }
+
+        if (System.currentTimeMillis() - previous.getScannedAt() > MAX_AGE_IN_MILLIS) {
+            logger.println("[meterian] The last analysis is older than a day, running Meterian analysis...");
+            return null;
+        }
+
+        Collection<String> paths = changes.getPaths();
+        if (paths == null && immediate)
+            paths = changeSets();
+
+        if (paths == null) {
+            logger.println("[meterian] Unable to tell the files changed since the last analysis, running Meterian analysis...");
+            return null;
+        }
+
+        for (String path : paths) {
+            if (manifestDetector.isManifest(path)) {
+                logger.format("[meterian] A change on the manifest file %s was detected, running Meterian analysis...%n", path);
+                return null;
+            }
+        }
+
+        logger.format("[meterian] No change on a manifest file since the analysis of %s, no analysis needed :)%n",
+                previousRun.getFullDisplayName());
+        return previous;
+    }
+
+    @Override
+    public void record(MeterianReportAction action) {
+        if (action != null && head != null)
+            action.setCommit(head);
+    }
+
+    private GitChanges diff(String base) throws InterruptedException {
+        if (workspace == null)
+            return new GitChanges(null, null);
+
+        try {
+            return workspace.act(new Diff(base));
+        } catch (IOException ex) {
+            log.warn("Unable to compute the changes in {}", workspace, ex);
+            return new GitChanges(null, null);
+        }
+    }
+
+    private Collection<String> changeSets() {
+        if (!(run instanceof RunWithSCM))
+            return null;
+
+        Set<String> paths = new TreeSet<>();
+        for (ChangeLogSet<? extends ChangeLogSet.Entry> changeSet : ((RunWithSCM<?, ?>) run).getChangeSets()) {
+            for (ChangeLogSet.Entry entry : changeSet) {
+                paths.addAll(entry.getAffectedPaths());
+            }
+        }
+
+        return paths;
+    }
+
+    private static class Diff extends MasterToSlaveFileCallable<GitChanges> {
+        private static final long serialVersionUID = 1L;
+
+        private final String base;
+
+        Diff(String base) {
+            this.base = base;
+        }
+
+        @Override
+        public GitChanges invoke(File workspace, VirtualChannel channel) throws IOException {
+            return GitChanges.since(workspace, base);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package io.meterian.jenkins.glue.executors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.remoting.VirtualChannel;
+import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.core.SingleFlight;
+import io.meterian.jenkins.glue.MeterianReportAction;
+import io.meterian.jenkins.io.ClientDigest;
+import io.meterian.jenkins.io.ResultStore;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
+
+/**
+ * Reuses the result of an analysis of the same commit, with the same
+ * manifests, client and arguments, run by any job on this controller, i.e.
+ * when a build is replayed or when several jobs build the same commit.
+ *
+ * When such an analysis is still running, the build waits for it rather than
+ * starting another client, see {@link SingleFlight}. Results of analyses that
+ * timed out or failed without a verdict are never shared.
+ */
+public class SharedResults implements AnalysisShortcut {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedResults.class);
+
+    private static ResultStore store;
+    private static final SingleFlight<String, ResultStore.Entry> flights = new SingleFlight<>();
+
+    private final Run<?, ?> run;
+    private final FilePath workspace;
+    private final WorkspaceFingerprint fingerprint;
+    private final Meterian client;
+    private final PrintStream logger;
+
+    private String key;
+    private boolean leader;
+
+    public SharedResults(Run<?, ?> run, FilePath workspace, WorkspaceFingerprint fingerprint, Meterian client, PrintStream logger) {
+        this.run = run;
+        this.workspace = workspace;
+        this.fingerprint = fingerprint;
+        this.client = client;
+        this.logger = logger;
+    }
+
+    public static synchronized ResultStore store() {
+        if (store == null)
+            store = new ResultStore(new File(Jenkins.get().getRootDir(), "meterian/results"));
+        return store;
+    }
+
+    @Override
+    public MeterianReportAction reusable() throws InterruptedException {
+        key = key();
+        if (key == null)
+            return null;
+
+        ResultStore.Entry entry = completed(store().get(key));
+        if (entry == null) {
+            if (flights.isInFlight(key))
+                logger.println("[meterian] The same commit is being analysed by another build, waiting for its result...");
+
+            entry = flights.join(key);
+            if (entry == null) {
+                leader = true;
+                // a previous leader may have landed just before joining
+                entry = completed(store().get(key));
+                if (entry != null)
+                    release(entry);
+            }
+        }
+
+        if (entry == null)
+            return null;
+
+        logger.println("[meterian] This commit was already analysed with the same manifests, no analysis needed :)");
+        return MeterianReportAction.restored(entry.result, entry.scannedAt);
+    }
+
+    @Override
+    public void record(MeterianReportAction action) {
+        // only complete results are shared: on failures a waiting build, if
+        // any, runs the analysis again
+        if (action == null || key == null || action.isCarriedForward() || !action.isComplete()) {
+            release(null);
+            return;
+        }
+
+        ResultStore.Entry entry = new ResultStore.Entry();
+        entry.key = key;
+        entry.result = action.toResult();
+        entry.scannedAt = action.getScannedAt();
+        try {
+            store().put(key, entry.result, entry.scannedAt);
+        } catch (IOException ex) {
+            log.warn("Unable to store the result of {}", run, ex);
+        } finally {
+            release(entry);
+        }
+    }
+
+    private static ResultStore.Entry completed(ResultStore.Entry entry) {
+        return (entry == null || entry.result == null || !entry.result.isComplete()) ? null : entry;
+    }
+
+    public static int inFlight() {
+        return flights.size();
+    }
+
+    private void release(ResultStore.Entry entry) {
+        if (leader) {
+            leader = false;
+            flights.land(key, entry);
+        }
+    }
+
+    private String key() throws InterruptedException {
+        if (workspace == null)
+            return null;
+
+        Identity identity;
+        try {
+            identity = workspace.act(new Identify());
+        } catch (IOException ex) {
+            log.warn("Unable to identify the commit in {}", workspace, ex);
+            return null;
+        }
+
+        if (identity.origin == null || identity.commit == null)
+            return null;
+
+        String manifests = fingerprint.get();
+        if (manifests == null)
+            return null;
+
+        List<String> args = client.getFinalClientArgs();
+        return ResultStore.key(identity.origin, identity.commit, manifests,
+                client.getClientVersion(),
+                ClientDigest.hex(ClientDigest.newDigest().digest(String.join("\u0000", args).getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static class Identity implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        String origin;
+        String commit;
+    }
+
+    private static class Identify extends MasterToSlaveFileCallable<Identity> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Identity invoke(File workspace, VirtualChannel channel) throws IOException {
+            Identity identity = new Identity();
+            identity.origin = GitChanges.origin(workspace);
+            if (identity.origin != null)
+                identity.commit = GitChanges.since(workspace, null).getHead();
+            return identity;
+        }
+    }
+}
@@ -1,18 +1,30 @@
 package io.meterian.jenkins.glue.executors;
 
+import java.util.Collections;
+import java.util.List;
+
 import io.meterian.jenkins.autofixfeature.AutoFixFeature;
 import io.meterian.jenkins.core.Meterian;
+import io.meterian.jenkins.glue.MeterianReportAction;
 import io.meterian.jenkins.glue.clientrunners.ClientRunner;
 
 public class StandardExecutor implements MeterianExecutor {
 
     private ClientRunner clientRunner;
     private AutoFixFeature autoFixFeature;
+    private List<AnalysisShortcut> shortcuts;
 
     public StandardExecutor(ClientRunner clientRunner,
                             AutoFixFeature autoFixFeature) {
+        this(clientRunner, autoFixFeature, Collections.<AnalysisShortcut>emptyList());
+    }
+
+    public StandardExecutor(ClientRunner clientRunner,
+                            AutoFixFeature autoFixFeature,
+                            List<AnalysisShortcut> shortcuts) {
         this.clientRunner = clientRunner;
         this.autoFixFeature = autoFixFeature;
+        this.shortcuts = shortcuts;
     }
 
     @Override
@@ -20,7 +32,20 @@ public class StandardExecutor implements MeterianExecutor {
         if (clientRunner.userHasUsedTheAutofixFlag()) {
             autoFixFeature.execute();
         } else {
-            clientRunner.execute();
+            for (AnalysisShortcut shortcut : shortcuts) {
+                MeterianReportAction previous = shortcut.reusable();
+                if (previous != null) {
+                    clientRunner.reuse(previous);
+                    return;
+                }
+            }
+
+            try {
+                clientRunner.execute();
+            } finally {
+                for (AnalysisShortcut shortcut : shortcuts)
+                    shortcut.record(clientRunner.getAttached());
+            }
         }
     }
 }
@@ -0,0 +1,63 @@
+package io.meterian.jenkins.glue.executors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import io.meterian.jenkins.core.DependencyFingerprint;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * The {@link DependencyFingerprint} of the workspace, computed at most once
+ * per analysis and shared by the shortcuts needing it, as it walks and parses
+ * every manifest in the workspace.
+ */
+public class WorkspaceFingerprint {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkspaceFingerprint.class);
+
+    private final FilePath workspace;
+    private final PrintStream logger;
+
+    private boolean computed;
+    private String value;
+
+    public WorkspaceFingerprint(FilePath workspace, PrintStream logger) {
+        this.workspace = workspace;
+        this.logger = logger;
+    }
+
+    /**
+     * Returns the fingerprint, null when it cannot be computed
+     */
+    public synchronized String get() throws InterruptedException {
+        if (computed)
+            return value;
+
+        if (workspace != null) {
+            try {
+                value = workspace.act(new Fingerprint());
+            } catch (IOException ex) {
+                log.warn("Unable to compute the dependency fingerprint of {}", workspace, ex);
+                logger.println("[meterian] Unable to compute the dependency fingerprint: " + ex.getMessage());
+            }
+        }
+
+        computed = true;
+        return value;
+    }
+
+    private static class Fingerprint extends MasterToSlaveFileCallable<String> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String invoke(File workspace, VirtualChannel channel) throws IOException {
+            return new DependencyFingerprint().of(workspace);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.meterian.jenkins.glue.launchers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import io.meterian.jenkins.io.ClientDigest;
+
+/**
+ * Distributes the client jar downloaded by the controller to the agents.
+ *
+ * Agents keep the jars in a content-addressed folder, where each file is named
+ * after its SHA-256 digest: the jar travels over the remoting channel only when
+ * the agent does not hold a copy with the same digest yet.
+ *
+ * Every build touches the jar it uses, and other jars are removed only once
+ * unused for {@value #STALE_AFTER_IN_HOURS} hours, so that a jar another build
+ * is about to launch is never pruned under its feet.
+ */
+public class ClientDistributor {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientDistributor.class);
+
+    public static final String CLIENTS_FOLDER = ".meterian/clients";
+
+    public static final long STALE_AFTER_IN_HOURS = 24L;
+
+    private final PrintStream console;
+
+    public ClientDistributor(PrintStream console) {
+        this.console = console;
+    }
+
+    public FilePath distribute(VirtualChannel channel, File clientJar) throws IOException, InterruptedException {
+        String digest = ClientDigest.of(clientJar);
+
+        FilePath folder = FilePath.getHomeDirectory(channel).child(CLIENTS_FOLDER);
+        FilePath target = folder.child(digest + ".jar");
+        if (target.exists()) {
+            log.debug("Client {} already present at {}", digest, target);
+            target.touch(System.currentTimeMillis());
+            return target;
+        }
+
+        console.println("[meterian] Shipping the Meterian client to the build node...");
+        log.debug("Copying client {} to {}", clientJar, target);
+        folder.mkdirs();
+        FilePath temp = folder.createTempFile("meterian-cli", ".part");
+        try {
+            temp.copyFrom(new FilePath(clientJar));
+            temp.renameTo(target);
+        } finally {
+            if (temp.exists())
+                temp.delete();
+        }
+
+        prune(folder, digest);
+        return target;
+    }
+
+    // files are named after the digest of their jar, i.e. the class data
+    // archive, and go together with it; leftovers of failed copies go alone
+    private void prune(FilePath folder, String digest) throws InterruptedException {
+        long staleBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(STALE_AFTER_IN_HOURS);
+        try {
+            for (FilePath file : folder.list()) {
+                String name = file.getName();
+                if (name.startsWith(digest))
+                    continue;
+
+                FilePath owner = name.endsWith(".part") ? file : folder.child(name.split("\\.")[0] + ".jar");
+                if (!owner.exists() || owner.lastModified() < staleBefore) {
+                    log.debug("Removing stale client file {}", file);
+                    file.delete();
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Unable to prune stale clients from {}", folder, ex);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.meterian.jenkins.glue.launchers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.meterian.common.system.Shell.Options;
+
+public interface ClientLauncher {
+
+    public interface Process {
+
+        public int waitFor(long timeoutInSeconds) throws IOException;
+
+        /**
+         * True when the process was killed because the timeout expired
+         */
+        public boolean isTimedOut();
+
+        public void destroy() throws IOException;
+    }
+
+    public String install(File clientJar) throws IOException;
+
+    public boolean exists(String path) throws IOException;
+
+    public Process launch(String[] commands, Options options) throws IOException;
+
+    public String newTempPath(String prefix, String suffix) throws IOException;
+
+    public InputStream open(String path) throws IOException;
+
+    public void delete(String path) throws IOException;
+
+    /**
+     * Renames a file, replacing the target: both must be in the same folder,
+     * so that the target is never seen half written
+     */
+    public void move(String from, String to) throws IOException;
+
+}
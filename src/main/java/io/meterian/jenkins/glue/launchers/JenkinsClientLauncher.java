@@ -0,0 +1,173 @@
+package io.meterian.jenkins.glue.launchers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.meterian.common.system.Shell.Options;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.slaves.WorkspaceList;
+import hudson.model.TaskListener;
+import jenkins.util.Timer;
+
+/**
+ * Runs the Meterian client on the node owning the workspace, through the
+ * {@link Launcher} provided by Jenkins: the client jar is shipped to the node
+ * by the {@link ClientDistributor}, and the output is streamed back over the
+ * remoting channel.
+ */
+public class JenkinsClientLauncher implements ClientLauncher {
+
+    private final Launcher launcher;
+    private final FilePath workspace;
+    private final TaskListener listener;
+
+    public JenkinsClientLauncher(Launcher launcher, FilePath workspace, TaskListener listener) {
+        this.launcher = launcher;
+        this.workspace = workspace;
+        this.listener = listener;
+    }
+
+    @Override
+    public String install(File clientJar) throws IOException {
+        if (!workspace.isRemote())
+            return clientJar.getAbsolutePath();
+
+        try {
+            return new ClientDistributor(console()).distribute(workspace.getChannel(), clientJar).getRemote();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation interrupted!", ex);
+        }
+    }
+
+    @Override
+    public boolean exists(String path) throws IOException {
+        try {
+            FilePath file = new FilePath(workspace.getChannel(), path);
+            return file.exists() && file.length() > 0;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation interrupted!", ex);
+        }
+    }
+
+    @Override
+    public String newTempPath(String prefix, String suffix) throws IOException {
+        try {
+            FilePath tmp = WorkspaceList.tempDir(workspace);
+            tmp.mkdirs();
+            return tmp.createTempFile(prefix, suffix).getRemote();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation interrupted!", ex);
+        }
+    }
+
+    @Override
+    public InputStream open(String path) throws IOException {
+        try {
+            return workspace.child(path).read();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation interrupted!", ex);
+        }
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        try {
+            FilePath file = workspace.child(path);
+            if (file.exists())
+                file.delete();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation interrupted!", ex);
+        }
+    }
+
+    @Override
+    public void move(String from, String to) throws IOException {
+        try {
+            workspace.child(from).renameTo(workspace.child(to));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation interrupted!", ex);
+        }
+    }
+
+    @Override
+    public Process launch(String[] commands, Options options) throws IOException {
+        LineGobblerOutputStream stdout = new LineGobblerOutputStream("STDOUT", options.getOutputGobbler());
+        LineGobblerOutputStream stderr = new LineGobblerOutputStream("STDERR", options.getErrorGobbler());
+        try {
+            Proc proc = launcher.launch()
+                    .cmds(commands)
+                    .envs(options.getEnvironmentVariables())
+                    .pwd(workspace)
+                    .stdout(stdout)
+                    .stderr(stderr)
+                    .quiet(true)
+                    .start();
+            return new Process() {
+                private volatile boolean timedOut;
+
+                @Override
+                public int waitFor(long timeoutInSeconds) throws IOException {
+                    // on timeout the process is killed, and Proc.kill() takes down the
+                    // whole tree, finding the descendants by the cookie in their environment
+                    ScheduledFuture<?> killer = Timer.get().schedule(() -> {
+                        timedOut = true;
+                        try {
+                            destroy();
+                        } catch (IOException ex) {
+                            listener.error("Unable to stop the Meterian client: " + ex.getMessage());
+                        }
+                    }, timeoutInSeconds, TimeUnit.SECONDS);
+
+                    try {
+                        int exitCode = proc.join();
+                        // hands over the last line when it's not terminated by a newline
+                        stdout.close();
+                        stderr.close();
+                        return exitCode;
+                    } catch (InterruptedException ex) {
+                        destroy();
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Operation interrupted!", ex);
+                    } finally {
+                        killer.cancel(false);
+                    }
+                }
+
+                @Override
+                public boolean isTimedOut() {
+                    return timedOut;
+                }
+
+                @Override
+                public void destroy() throws IOException {
+                    try {
+                        proc.kill();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Operation interrupted!", ex);
+                    }
+                }
+            };
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation interrupted!", ex);
+        }
+    }
+
+    private PrintStream console() {
+        return listener.getLogger();
+    }
+}
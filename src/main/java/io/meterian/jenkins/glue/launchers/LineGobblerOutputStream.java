@@ -0,0 +1,29 @@
+package io.meterian.jenkins.glue.launchers;
+
+import java.nio.charset.Charset;
+
+import com.meterian.common.system.LineGobbler;
+
+import hudson.console.LineTransformationOutputStream;
+
+/**
+ * Splits the output of a remote process in lines and hands them to a
+ * {@link LineGobbler}, as the {@code StreamGobbler} does for local processes.
+ */
+public class LineGobblerOutputStream extends LineTransformationOutputStream {
+
+    private final String type;
+    private final LineGobbler gobbler;
+    private final Charset charset;
+
+    public LineGobblerOutputStream(String type, LineGobbler gobbler) {
+        this.type = type;
+        this.gobbler = gobbler;
+        this.charset = Charset.defaultCharset();
+    }
+
+    @Override
+    protected void eol(byte[] bytes, int len) {
+        gobbler.process(type, trimEOL(new String(bytes, 0, len, charset)));
+    }
+}
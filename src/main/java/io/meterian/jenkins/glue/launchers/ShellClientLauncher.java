@@ -0,0 +1,81 @@
+package io.meterian.jenkins.glue.launchers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import com.meterian.common.system.OS;
+import com.meterian.common.system.Shell;
+import com.meterian.common.system.Shell.Options;
+import com.meterian.common.system.Shell.Task;
+
+public class ShellClientLauncher implements ClientLauncher {
+
+    private final Shell shell;
+
+    public ShellClientLauncher() {
+        this(new Shell());
+    }
+
+    public ShellClientLauncher(Shell shell) {
+        this.shell = shell;
+    }
+
+    @Override
+    public String install(File clientJar) {
+        return clientJar.getAbsolutePath();
+    }
+
+    @Override
+    public boolean exists(String path) {
+        File file = new File(path);
+        return file.exists() && file.length() > 0;
+    }
+
+    @Override
+    public String newTempPath(String prefix, String suffix) throws IOException {
+        return File.createTempFile(prefix, suffix).getAbsolutePath();
+    }
+
+    @Override
+    public InputStream open(String path) throws IOException {
+        return new FileInputStream(path);
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        File file = new File(path);
+        if (file.exists() && !file.delete())
+            throw new IOException("Unable to delete " + path);
+    }
+
+    @Override
+    public void move(String from, String to) throws IOException {
+        Files.move(Paths.get(from), Paths.get(to), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public Process launch(String[] commands, Options options) throws IOException {
+        Task task = shell.exec(commands, options.withEnvironmentVariables(new OS().getenv()));
+        return new Process() {
+            @Override
+            public int waitFor(long timeoutInSeconds) throws IOException {
+                return task.waitFor(timeoutInSeconds);
+            }
+
+            @Override
+            public boolean isTimedOut() {
+                return task.isTimedOut();
+            }
+
+            @Override
+            public void destroy() {
+                task.destroy();
+            }
+        };
+    }
+}
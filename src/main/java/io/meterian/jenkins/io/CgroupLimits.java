@@ -0,0 +1,171 @@
+package io.meterian.jenkins.io;
+
+import java.io.IOException;
+
+/**
+ * The memory and the CPUs available on a node, as limited by the cgroups (v1
+ * or v2) of the container the node runs in, if any.
+ *
+ * Files are read through a {@link Source}, so that the limits of remote agents
+ * can be read as well; a missing file, i.e. on hosts other than Linux, leaves
+ * the corresponding limit unknown.
+ */
+public class CgroupLimits {
+
+    public interface Source {
+        /**
+         * Returns the content of the file, or null when it cannot be read
+         */
+        public String read(String path) throws IOException;
+    }
+
+    public static final long UNKNOWN = -1;
+
+    private static final String CGROUP = "/sys/fs/cgroup/";
+
+    // v1 reports no memory limit as a huge number, rounded to the page size
+    private static final long UNLIMITED_V1 = Long.MAX_VALUE / 2;
+
+    private final long hostMemoryInBytes;
+    private final double hostCpus;
+    private final long cgroupMemoryInBytes;
+    private final double cgroupCpus;
+
+    CgroupLimits(long hostMemoryInBytes, double hostCpus, long cgroupMemoryInBytes, double cgroupCpus) {
+        this.hostMemoryInBytes = hostMemoryInBytes;
+        this.hostCpus = hostCpus;
+        this.cgroupMemoryInBytes = cgroupMemoryInBytes;
+        this.cgroupCpus = cgroupCpus;
+    }
+
+    public static CgroupLimits read(Source source) throws IOException {
+        long hostMemory = memTotal(source.read("/proc/meminfo"));
+        double hostCpus = processors(source.read("/proc/cpuinfo"));
+
+        long memory = number(source.read(CGROUP + "memory.max"));
+        if (memory == UNKNOWN) {
+            memory = number(source.read(CGROUP + "memory/memory.limit_in_bytes"));
+            if (memory >= UNLIMITED_V1)
+                memory = UNKNOWN;
+        }
+        if (memory != UNKNOWN && hostMemory != UNKNOWN && memory >= hostMemory)
+            memory = UNKNOWN;
+
+        double cpus = quotaV2(source.read(CGROUP + "cpu.max"));
+        if (cpus == UNKNOWN)
+            cpus = quotaV1(source.read(CGROUP + "cpu/cpu.cfs_quota_us"), source.read(CGROUP + "cpu/cpu.cfs_period_us"));
+        if (cpus == UNKNOWN)
+            cpus = quotaV1(source.read(CGROUP + "cpu,cpuacct/cpu.cfs_quota_us"), source.read(CGROUP + "cpu,cpuacct/cpu.cfs_period_us"));
+
+        double cpuset = cpuset(source.read(CGROUP + "cpuset.cpus.effective"));
+        if (cpuset == UNKNOWN)
+            cpuset = cpuset(source.read(CGROUP + "cpuset/cpuset.cpus"));
+        if (cpuset != UNKNOWN && (hostCpus == UNKNOWN || cpuset < hostCpus))
+            cpus = (cpus == UNKNOWN) ? cpuset : Math.min(cpus, cpuset);
+        if (cpus != UNKNOWN && hostCpus != UNKNOWN && cpus >= hostCpus)
+            cpus = UNKNOWN;
+
+        return new CgroupLimits(hostMemory, hostCpus, memory, cpus);
+    }
+
+    /**
+     * The memory available, in bytes, or {@link #UNKNOWN}
+     */
+    public long getMemoryInBytes() {
+        return cgroupMemoryInBytes != UNKNOWN ? cgroupMemoryInBytes : hostMemoryInBytes;
+    }
+
+    /**
+     * The CPUs available, possibly fractional, or {@link #UNKNOWN}
+     */
+    public double getCpus() {
+        return cgroupCpus != UNKNOWN ? cgroupCpus : hostCpus;
+    }
+
+    /**
+     * True when the node runs in a container limiting its memory or its CPUs
+     */
+    public boolean isContainerLimited() {
+        return cgroupMemoryInBytes != UNKNOWN || cgroupCpus != UNKNOWN;
+    }
+
+    @Override
+    public String toString() {
+        return "[memory=" + (getMemoryInBytes() == UNKNOWN ? "unknown" : getMemoryInBytes() / (1024 * 1024) + " MB")
+                + ", cpus=" + (getCpus() == UNKNOWN ? "unknown" : String.valueOf(getCpus()))
+                + ", container=" + isContainerLimited() + "]";
+    }
+
+    private static long memTotal(String meminfo) {
+        if (meminfo != null)
+            for (String line : meminfo.split("\n"))
+                if (line.startsWith("MemTotal:")) {
+                    long kilobytes = number(line.substring("MemTotal:".length()).replace("kB", ""));
+                    return kilobytes == UNKNOWN ? UNKNOWN : kilobytes * 1024;
+                }
+        return UNKNOWN;
+    }
+
+    private static double processors(String cpuinfo) {
+        if (cpuinfo == null)
+            return UNKNOWN;
+
+        int count = 0;
+        for (String line : cpuinfo.split("\n"))
+            if (line.startsWith("processor"))
+                count++;
+        return count == 0 ? UNKNOWN : count;
+    }
+
+    // i.e. "max 100000" or "150000 100000"
+    private static double quotaV2(String text) {
+        if (text == null)
+            return UNKNOWN;
+
+        String[] parts = text.trim().split("\\s+");
+        if (parts.length != 2)
+            return UNKNOWN;
+        return ratio(number(parts[0]), number(parts[1]));
+    }
+
+    private static double quotaV1(String quota, String period) {
+        return ratio(number(quota), number(period));
+    }
+
+    private static double ratio(long quota, long period) {
+        return (quota <= 0 || period <= 0) ? UNKNOWN : (double) quota / period;
+    }
+
+    // i.e. "0-3,6,8-9"
+    private static double cpuset(String text) {
+        if (text == null || text.trim().isEmpty())
+            return UNKNOWN;
+
+        int count = 0;
+        try {
+            for (String range : text.trim().split(",")) {
+                int dash = range.indexOf('-');
+                if (dash < 0)
+                    count++;
+                else
+                    count += Integer.parseInt(range.substring(dash + 1).trim()) - Integer.parseInt(range.substring(0, dash).trim()) + 1;
+            }
+        } catch (NumberFormatException ex) {
+            return UNKNOWN;
+        }
+        return count <= 0 ? UNKNOWN : count;
+    }
+
+    private static long number(String text) {
+        if (text == null)
+            return UNKNOWN;
+
+        try {
+            long value = Long.parseLong(text.trim());
+            return value < 0 ? UNKNOWN : value;
+        } catch (NumberFormatException ex) {
+            // i.e. "max"
+            return UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package io.meterian.jenkins.io;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a class data sharing archive next to the Meterian client jar, so that
+ * every launch after the first one maps the client classes from the archive
+ * instead of loading and verifying them again.
+ *
+ * The first run dumps the archive at exit into a temporary file, which is
+ * renamed to the archive only once the client exited on its own, so that a
+ * concurrent run never maps a partial archive; the following runs use it.
+ * When a new client is downloaded, or the JVM rejects the archive, i.e. after
+ * the JDK on the node was upgraded, the archive is deleted and dumped again.
+ * Dynamic archives need Java 13, older JVMs are left alone.
+ */
+public class ClassDataArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(ClassDataArchive.class);
+
+    public static final String ARCHIVE_SUFFIX = ".jsa";
+
+    public static final int MIN_JAVA_VERSION = 13;
+
+    // limits the JIT to C1: faster to start, slower on long analyses
+    public static final String QUICK_JIT_ARG = "-XX:TieredStopAtLevel=1";
+
+    private final File archive;
+
+    public ClassDataArchive(File clientJar) {
+        this.archive = new File(clientJar.getParentFile(), clientJar.getName() + ARCHIVE_SUFFIX);
+    }
+
+    public File getArchive() {
+        return archive;
+    }
+
+    public void invalidate() {
+        if (archive.exists() && !archive.delete())
+            log.warn("Unable to delete stale class data archive {}", archive);
+    }
+
+    public static boolean isSupported(JavaVersion java) {
+        return java.isAtLeast(MIN_JAVA_VERSION);
+    }
+
+    public static String archivePathFor(String clientJarPath) {
+        return clientJarPath + ARCHIVE_SUFFIX;
+    }
+
+    /**
+     * A path next to the archive, unique to this run, to dump the archive into
+     */
+    public static String dumpPathFor(String archivePath) {
+        return archivePath + "." + UUID.randomUUID() + ".tmp";
+    }
+
+    public static List<String> useArgs(String archivePath) {
+        return Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + archivePath);
+    }
+
+    public static List<String> dumpArgs(String dumpPath) {
+        return Arrays.asList("-Xshare:auto", "-XX:ArchiveClassesAtExit=" + dumpPath);
+    }
+
+    /**
+     * True when the line is the JVM warning that it could not map the archive,
+     * in which case it runs without it
+     */
+    public static boolean isRejection(String line) {
+        String text = line.toLowerCase(Locale.ROOT);
+        return (text.contains("][cds") && (text.contains("[warning]") || text.contains("[error]")))
+                || (text.contains("shared archive file") && (text.contains("error") || text.contains("unable")));
+    }
+}
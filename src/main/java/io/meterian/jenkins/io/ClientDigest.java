@@ -0,0 +1,173 @@
+package io.meterian.jenkins.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the SHA-256 digest of the client jar and keeps it in a sidecar file,
+ * so that it's calculated only once per downloaded client.
+ *
+ * The sidecar also holds the digest of the zip central directory of the jar:
+ * it's a few kilobytes long and carries the CRC of every entry, so checking it
+ * is a cheap way to detect a truncated or damaged jar without reading it all.
+ * It's trusted only while the size and the modification time of the jar are
+ * those recorded with it, otherwise the digest is computed again.
+ */
+public class ClientDigest {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientDigest.class);
+
+    public static final String DIGEST_SUFFIX = ".sha256";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_ZIP_COMMENT_SIZE = 0xffff;
+
+    public static File digestFileOf(File jar) {
+        return new File(jar.getParentFile(), jar.getName() + DIGEST_SUFFIX);
+    }
+
+    public static String of(File jar) throws IOException {
+        List<String> lines = readDigestFile(jar);
+        if (isCurrent(lines, jar))
+            return lines.get(0);
+
+        String digest = compute(jar);
+        store(jar, digest);
+        return digest;
+    }
+
+    public static boolean verify(File jar) {
+        try {
+            List<String> lines = readDigestFile(jar);
+            if (isCurrent(lines, jar))
+                return lines.get(1).equals(centralDirectoryDigest(jar));
+
+            String digest = compute(jar);
+            if (!lines.isEmpty() && !lines.get(0).equals(digest))
+                return false;
+
+            store(jar, digest);
+            return true;
+        } catch (IOException ex) {
+            log.debug("Unable to verify {}", jar, ex);
+            return false;
+        }
+    }
+
+    public static void store(File jar, String digest) throws IOException {
+        store(jar, digest, centralDirectoryDigest(jar));
+    }
+
+    public static void store(File jar, String digest, String centralDirectoryDigest) throws IOException {
+        Files.write(digestFileOf(jar).toPath(), Arrays.asList(digest, centralDirectoryDigest, stampOf(jar)), UTF_8);
+        log.debug("Digest of {} is {}", jar, digest);
+    }
+
+    public static String compute(File jar) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, jar);
+        return hex(digest.digest());
+    }
+
+    public static void update(MessageDigest digest, File file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int len;
+            while ((len = in.read(buffer)) != -1)
+                digest.update(buffer, 0, len);
+        }
+    }
+
+    public static String centralDirectoryDigest(File jar) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(jar, "r")) {
+            long length = file.length();
+            if (length < END_OF_CENTRAL_DIRECTORY_SIZE)
+                throw new IOException("Not a zip file: " + jar);
+
+            int tailSize = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_ZIP_COMMENT_SIZE);
+            byte[] tail = new byte[tailSize];
+            file.seek(length - tailSize);
+            file.readFully(tail);
+
+            int eocd = -1;
+            for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0 && eocd == -1; i--)
+                if (readInt(tail, i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+                    eocd = i;
+            if (eocd == -1)
+                throw new IOException("End of central directory not found in " + jar);
+
+            long directorySize = readInt(tail, eocd + 12) & 0xffffffffL;
+            long directoryOffset = readInt(tail, eocd + 16) & 0xffffffffL;
+            long eocdOffset = length - tailSize + eocd;
+            if (directoryOffset + directorySize > eocdOffset)
+                throw new IOException("Central directory out of bounds in " + jar);
+
+            byte[] directory = new byte[(int) directorySize];
+            file.seek(directoryOffset);
+            file.readFully(directory);
+
+            MessageDigest digest = newDigest();
+            digest.update(directory);
+            digest.update(tail, eocd, tailSize - eocd);
+            return hex(digest.digest());
+        }
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    private static List<String> readDigestFile(File jar) throws IOException {
+        File digestFile = digestFileOf(jar);
+        if (!digestFile.exists())
+            return Collections.emptyList();
+
+        List<String> lines = Files.readAllLines(digestFile.toPath(), UTF_8);
+        return (lines.isEmpty() || lines.get(0).trim().isEmpty()) ? Collections.emptyList() : lines;
+    }
+
+    // the sidecar holds the digest, the central directory digest and the stamp
+    private static boolean isCurrent(List<String> lines, File jar) {
+        return lines.size() > 2 && lines.get(2).equals(stampOf(jar));
+    }
+
+    private static String stampOf(File jar) {
+        return jar.length() + ":" + jar.lastModified();
+    }
+
+    private static int readInt(byte[] bytes, int pos) {
+        return (bytes[pos] & 0xff)
+                | (bytes[pos + 1] & 0xff) << 8
+                | (bytes[pos + 2] & 0xff) << 16
+                | (bytes[pos + 3] & 0xff) << 24;
+    }
+}
@@ -4,12 +4,31 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
@@ -21,49 +40,186 @@ import org.slf4j.LoggerFactory;
 public class ClientDownloader {
 
     private static final Logger log = LoggerFactory.getLogger(ClientDownloader.class);
-    
+
     public static final String JAR_FILENAME = "meterian-cli.jar";
     public static final File CACHE_FOLDER = new File(System.getProperty("user.home"), ".meterian");
     public static final File JAR_FILE = new File(CACHE_FOLDER, JAR_FILENAME);
     public static final File ETAG_FILE = new File(CACHE_FOLDER, JAR_FILENAME + ".etag");
 
+    public static final int DEFAULT_FRESHNESS_IN_MINUTES = 60;
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final int MAX_DOWNLOAD_ATTEMPTS = 5;
+    private static final long FIRST_RETRY_DELAY_IN_MILLIS = 500L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private static final Charset UTF_8 = Charset.forName("UTF-8");
 
+    private static final Map<String, Validation> validations = new ConcurrentHashMap<>();
+    private static final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private static final Map<File, CompletableFuture<Void>> downloads = new HashMap<>();
+    private static ExecutorService refresher;
+
+    private static class Validation {
+        private final String etag;
+        private final long timestamp;
+
+        Validation(String etag) {
+            this.etag = etag;
+            this.timestamp = System.currentTimeMillis();
+        }
+
+        boolean isFresh(long freshnessInMillis) {
+            return System.currentTimeMillis() - timestamp < freshnessInMillis;
+        }
+    }
+
+    private static class Download {
+        private final String etag;
+        private final String digest;
+
+        Download(String etag, String digest) {
+            this.etag = etag;
+            this.digest = digest;
+        }
+    }
+
+    private static class TransferInterruptedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        TransferInterruptedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
     private final HttpClient client;
     private final String url;
     private final PrintStream console;
+    private final long freshnessInMillis;
+    private final File cacheFolder;
+    private final File jarFile;
+    private final File etagFile;
+    private final String validationKey;
 
     public ClientDownloader(HttpClient client, String baseurl, PrintStream console) {
+        this(client, baseurl, console, DEFAULT_FRESHNESS_IN_MINUTES);
+    }
+
+    public ClientDownloader(HttpClient client, String baseurl, PrintStream console, int freshnessInMinutes) {
+        this(client, baseurl, console, freshnessInMinutes, CACHE_FOLDER);
+    }
+
+    public ClientDownloader(HttpClient client, String baseurl, PrintStream console, int freshnessInMinutes, File cacheFolder) {
         this.client = client;
         this.url = HttpClientFactory.makeUrl(baseurl, "latest-client-canary");
         this.console = console;
+        this.freshnessInMillis = TimeUnit.MINUTES.toMillis(freshnessInMinutes);
+        this.cacheFolder = cacheFolder;
+        this.jarFile = new File(cacheFolder, JAR_FILENAME);
+        this.etagFile = new File(cacheFolder, JAR_FILENAME + ".etag");
+        this.validationKey = url + "|" + jarFile.getAbsolutePath();
     }
 
     public File load() throws IOException {
-        CACHE_FOLDER.mkdirs();
+        cacheFolder.mkdirs();
 
         URI uri = newURI(url);
 
         boolean found = false;
-        log.debug("etagFile: {} (exist={})", ETAG_FILE, ETAG_FILE.exists());
-        log.debug("cachedFile: {} (exist={})", JAR_FILE, JAR_FILE.exists());
-        if (JAR_FILE.exists() && ETAG_FILE.exists()) {
+        log.debug("etagFile: {} (exist={})", etagFile, etagFile.exists());
+        log.debug("cachedFile: {} (exist={})", jarFile, jarFile.exists());
+        if (jarFile.exists() && etagFile.exists()) {
             log.debug("etagFile and cachedFile found");
-            String cachedEtag = readContents(ETAG_FILE);
-            String currentEtag = getEtag(uri);
-            found = currentEtag.equals(cachedEtag);
+            String cachedEtag = readContents(etagFile);
+            Validation last = validations.get(validationKey);
+            boolean trusted = last != null && last.etag.equals(cachedEtag);
+            if (!trusted && !ClientDigest.verify(jarFile)) {
+                log.warn("Cached client {} does not match its digest", jarFile);
+                console.println("[meterian] The cached Meterian client looks damaged");
+            } else if (freshnessInMillis > 0 && !cachedEtag.isEmpty()) {
+                if (!trusted || !last.isFresh(freshnessInMillis))
+                    refreshInBackground(uri);
+                found = true;
+            } else {
+                String currentEtag = getEtag(uri);
+                found = currentEtag.equals(cachedEtag);
+                if (found)
+                    validations.put(validationKey, new Validation(currentEtag));
+            }
         }
 
         if (!found) {
             console.println("[meterian] Downloading the latest meterian client...");
             log.debug("Etag not matching, downloading client from url {}", uri);
-            updateFiles(uri, JAR_FILE, ETAG_FILE);
+            updateFiles(uri, jarFile, etagFile);
         } else {
             log.debug("etag matches, using cached client");
         }
 
         console.println("[meterian] The Meterian client is ready to work");
-        return JAR_FILE;
+        return jarFile;
+    }
+
+    private static synchronized ExecutorService refresher() {
+        if (refresher == null || refresher.isShutdown())
+            refresher = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "meterian-client-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        return refresher;
+    }
+
+    /**
+     * Stops the background revalidation of the cached client, waiting briefly
+     * for one in progress; it's restarted on demand
+     */
+    public static synchronized void shutdown() {
+        if (refresher == null)
+            return;
+
+        log.info("Shutting down client refresher");
+        refresher.shutdown();
+        try {
+            if (!refresher.awaitTermination(5, TimeUnit.SECONDS))
+                refresher.shutdownNow();
+        } catch (InterruptedException e) {
+            refresher.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            refresher = null;
+            refreshing.clear();
+        }
+    }
+
+    static void resetValidations() {
+        validations.clear();
+    }
+
+    private void refreshInBackground(URI uri) {
+        if (!refreshing.add(validationKey))
+            return;
+
+        log.debug("Cached client not validated in the last {} ms, revalidating in background", freshnessInMillis);
+        refresher().execute(() -> {
+            try {
+                String cachedEtag = readContents(etagFile);
+                String currentEtag = getEtag(uri);
+                if (currentEtag.equals(cachedEtag)) {
+                    validations.put(validationKey, new Validation(currentEtag));
+                    log.debug("Cached client still current");
+                } else {
+                    log.info("A new Meterian client is available, downloading from url {}", uri);
+                    updateFiles(uri, jarFile, etagFile);
+                }
+            } catch (Exception ex) {
+                log.warn("Unable to revalidate the Meterian client", ex);
+            } finally {
+                refreshing.remove(validationKey);
+            }
+        });
     }
 
     private URI newURI(String urlstring) throws IOException {
@@ -74,25 +230,240 @@ public class ClientDownloader {
         }
     }
 
-    private void updateFiles(URI uri, File cachedFile, File etagFile) throws IOException{
-        HttpResponse response = client.execute(new HttpGet(uri));
+    private void updateFiles(URI uri, File cachedFile, File etagFile) throws IOException {
+        CompletableFuture<Void> download;
+        boolean owner = false;
+        synchronized (downloads) {
+            download = downloads.get(cachedFile);
+            if (download == null) {
+                download = new CompletableFuture<>();
+                downloads.put(cachedFile, download);
+                owner = true;
+            }
+        }
+
+        if (!owner) {
+            log.debug("Download of {} already in progress, waiting for it", cachedFile);
+            awaitDownload(download);
+            return;
+        }
+
         try {
-            if (status(response) == 200) {
-                Files.write(etagFile.toPath(), getEtagValue(response).getBytes(UTF_8));
-                try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(cachedFile))) {
-                    response.getEntity().writeTo(out);
-                }
-                log.debug("Successfully updated files");
+            lockAndUpdateFiles(uri, cachedFile, etagFile);
+            download.complete(null);
+        } catch (IOException | RuntimeException ex) {
+            download.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            synchronized (downloads) {
+                downloads.remove(cachedFile);
+            }
+        }
+    }
+
+    private void awaitDownload(CompletableFuture<Void> download) throws IOException {
+        try {
+            download.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation interrupted!", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IOException("Unable to download the Meterian client", ex.getCause());
+        }
+    }
+
+    private void lockAndUpdateFiles(URI uri, File cachedFile, File etagFile) throws IOException {
+        String previousEtag = readContents(etagFile);
+        File lockFile = new File(cachedFile.getParentFile(), cachedFile.getName() + LOCK_SUFFIX);
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+
+            String currentEtag = readContents(etagFile);
+            if (cachedFile.exists() && !currentEtag.isEmpty() && !currentEtag.equals(previousEtag)) {
+                log.debug("Client updated by another process while waiting for the lock");
+                validations.put(validationKey, new Validation(currentEtag));
+                return;
+            }
+
+            downloadFiles(uri, cachedFile, etagFile);
+        }
+    }
+
+    private void downloadFiles(URI uri, File cachedFile, File etagFile) throws IOException {
+        File partFile = new File(cachedFile.getParentFile(), cachedFile.getName() + PART_SUFFIX);
+        File partEtagFile = new File(etagFile.getParentFile(), etagFile.getName() + PART_SUFFIX);
+
+        Download download = null;
+        for (int attempt = 1; download == null; attempt++) {
+            try {
+                download = downloadPart(uri, partFile, partEtagFile);
+            } catch (TransferInterruptedException ex) {
+                if (attempt >= MAX_DOWNLOAD_ATTEMPTS)
+                    throw ex;
+                // doubling the delay, so that a struggling server is not hammered
+                long delay = FIRST_RETRY_DELAY_IN_MILLIS << (attempt - 1);
+                log.warn("Download of the client interrupted at {} bytes, resuming in {} ms (attempt {})", partFile.length(), delay, attempt, ex);
+                sleep(delay);
+            }
+        }
+
+        String centralDirectoryDigest;
+        try {
+            centralDirectoryDigest = ClientDigest.centralDirectoryDigest(partFile);
+        } catch (IOException ex) {
+            discard(partFile, partEtagFile);
+            throw new IOException("The downloaded Meterian client is not a valid jar", ex);
+        }
+
+        moveInPlace(partFile, cachedFile);
+        new ClassDataArchive(cachedFile).invalidate();
+        ClientDigest.store(cachedFile, download.digest, centralDirectoryDigest);
+        if (download.etag.isEmpty())
+            etagFile.delete();
+        else
+            moveInPlace(partEtagFile, etagFile);
+
+        validations.put(validationKey, new Validation(download.etag));
+        log.debug("Successfully updated files, digest {}", download.digest);
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation interrupted!", ex);
+        }
+    }
+
+    private Download downloadPart(URI uri, File partFile, File partEtagFile) throws IOException {
+        long offset = 0;
+        String partEtag = readContents(partEtagFile);
+
+        HttpGet request = new HttpGet(uri);
+        if (partFile.exists() && partFile.length() > 0 && !partEtag.isEmpty()) {
+            offset = partFile.length();
+            request.addHeader("Range", "bytes=" + offset + "-");
+            request.addHeader("If-Range", partEtag);
+        }
+
+        HttpResponse response = client.execute(request);
+        try {
+            int status = status(response);
+            if (status == 206 && offset > 0) {
+                log.debug("Resuming download of the client from byte {}", offset);
+            } else if (status == 200) {
+                offset = 0;
+                partEtag = getEtagValue(response);
+                // without an ETag the download can't be resumed with If-Range,
+                // an interrupted one starts over
+                if (partEtag.isEmpty())
+                    partEtagFile.delete();
+                else
+                    Files.write(partEtagFile.toPath(), partEtag.getBytes(UTF_8));
+            } else if (status == 416) {
+                discard(partFile, partEtagFile);
+                throw new TransferInterruptedException("Partial download not resumable", null);
             } else {
                 log.warn("Unable to update files, response {}", response);
                 throw new IOException("Unable to get access to the Meterian client at "+uri);
             }
+
+            MessageDigest digest = ClientDigest.newDigest();
+            if (offset > 0)
+                ClientDigest.update(digest, partFile);
+
+            long expectedLength = expectedLength(response, offset);
+            try (InputStream in = response.getEntity().getContent();
+                 OutputStream out = new BufferedOutputStream(new FileOutputStream(partFile, offset > 0))) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int len;
+                while ((len = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, len);
+                    digest.update(buffer, 0, len);
+                }
+            } catch (IOException ex) {
+                throw new TransferInterruptedException("Transfer interrupted", ex);
+            }
+
+            if (expectedLength >= 0 && partFile.length() != expectedLength)
+                throw new TransferInterruptedException("Expected " + expectedLength + " bytes, got " + partFile.length(), null);
+
+            String hex = ClientDigest.hex(digest.digest());
+            if (!matchesAdvertisedDigest(response, hex)) {
+                discard(partFile, partEtagFile);
+                throw new IOException("The downloaded Meterian client does not match the digest advertised by the server");
+            }
+
+            return new Download(partEtag, hex);
         } finally {
-            EntityUtils.consume(response.getEntity());
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    private long expectedLength(HttpResponse response, long offset) {
+        if (offset == 0)
+            return response.getEntity().getContentLength();
+
+        Header range = response.getFirstHeader("Content-Range");
+        if (range != null) {
+            String value = range.getValue();
+            int slash = value.lastIndexOf('/');
+            if (slash != -1 && !value.endsWith("*"))
+                try {
+                    return Long.parseLong(value.substring(slash+1).trim());
+                } catch (NumberFormatException ignored) {
+                    log.debug("Unexpected Content-Range {}", value);
+                }
         }
+
+        long length = response.getEntity().getContentLength();
+        return length < 0 ? -1 : offset + length;
+    }
+
+    private boolean matchesAdvertisedDigest(HttpResponse response, String hex) {
+        Header checksum = response.getFirstHeader("X-Checksum-Sha256");
+        if (checksum != null)
+            return checksum.getValue().trim().equalsIgnoreCase(hex);
+
+        Header digest = response.getFirstHeader("Digest");
+        if (digest != null) {
+            for (String token : digest.getValue().split(",")) {
+                token = token.trim();
+                if (token.regionMatches(true, 0, "SHA-256=", 0, 8)) {
+                    String expected = ClientDigest.hex(Base64.getDecoder().decode(token.substring(8)));
+                    return expected.equalsIgnoreCase(hex);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void discard(File partFile, File partEtagFile) {
+        partFile.delete();
+        partEtagFile.delete();
+    }
+
+    private void moveInPlace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            log.debug("Atomic move not supported, falling back to plain replace for {}", target);
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The ETag of a client downloaded in the given location, empty if unknown
+     */
+    public static String etagOf(File jarFile) {
+        return readContents(new File(jarFile.getParentFile(), jarFile.getName() + ".etag"));
     }
 
-    private String readContents(File cachedEtagFile) {
+    private static String readContents(File cachedEtagFile) {
         try {
             return Files.readAllLines(cachedEtagFile.toPath(), UTF_8).get(0);
         } catch (Exception any) {
@@ -110,7 +481,8 @@ public class ClientDownloader {
     }
 
     private String getEtagValue(final HttpResponse response) {
-        return response.getFirstHeader("ETag").getValue();
+        Header etag = response.getFirstHeader("ETag");
+        return etag == null ? "" : etag.getValue();
     }
 
     private int status(final HttpResponse response) {
@@ -0,0 +1,189 @@
+package io.meterian.jenkins.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decouples the client output from the Jenkins console: lines are accepted
+ * without ever blocking on the console, and written to it by a background
+ * thread that flushes every few lines or every second, whichever comes first.
+ *
+ * When the console falls behind and the queue is full, lines are spilled to a
+ * temporary file and replayed, in order, as soon as the console catches up.
+ * Closing the sink waits until every line has been written.
+ */
+public class ConsoleSink implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsoleSink.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+    private static final int FLUSH_EVERY_LINES = 50;
+    private static final long FLUSH_EVERY_MILLIS = 1000L;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String END = new String("<end>");
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    private final PrintStream console;
+    private final String prefix;
+    private final BlockingQueue<String> queue;
+    private final Thread drainer;
+    private final Object lock = new Object();
+
+    private File spillFile;
+    private BufferedWriter spillWriter;
+    private int spilledLines;
+    private volatile boolean closed;
+
+    private int unflushed;
+    private long lastFlush = System.currentTimeMillis();
+
+    public ConsoleSink(PrintStream console, String prefix) {
+        this(console, prefix, DEFAULT_QUEUE_SIZE);
+    }
+
+    public ConsoleSink(PrintStream console, String prefix, int queueSize) {
+        this.console = console;
+        this.prefix = prefix;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.drainer = new Thread(this::drain, "meterian-console-" + counter.incrementAndGet());
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    public void println(String line) {
+        synchronized (lock) {
+            if (closed) {
+                // late output, after the process was given up on
+                console.print(prefix);
+                console.println(line);
+                return;
+            }
+
+            if (spillWriter == null && queue.offer(line))
+                return;
+
+            spill(line);
+        }
+    }
+
+    public int getSpilledLines() {
+        synchronized (lock) {
+            return spilledLines;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed)
+                return;
+            closed = true;
+        }
+
+        try {
+            queue.put(END);
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation interrupted!", e);
+        }
+    }
+
+    private void spill(String line) {
+        try {
+            if (spillWriter == null) {
+                spillFile = File.createTempFile("meterian-console-", ".spill");
+                spillWriter = Files.newBufferedWriter(spillFile.toPath(), UTF_8);
+                log.debug("Console is falling behind, spilling to {}", spillFile);
+            }
+
+            spillWriter.write(line);
+            spillWriter.newLine();
+            spilledLines++;
+        } catch (IOException ex) {
+            log.warn("Unable to spill console line to {}", spillFile, ex);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                String line = queue.poll(FLUSH_EVERY_MILLIS, TimeUnit.MILLISECONDS);
+                if (line == END) {
+                    replaySpilled();
+                    break;
+                }
+
+                if (line != null)
+                    write(line);
+                else
+                    flushIfDue(true);
+
+                if (queue.isEmpty())
+                    replaySpilled();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            console.flush();
+        }
+    }
+
+    private void replaySpilled() {
+        File replay;
+        synchronized (lock) {
+            if (spillWriter == null || !queue.isEmpty())
+                return;
+
+            try {
+                spillWriter.close();
+            } catch (IOException ex) {
+                log.warn("Unable to close console spill file {}", spillFile, ex);
+            }
+            replay = spillFile;
+            spillWriter = null;
+            spillFile = null;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(replay.toPath(), UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                write(line);
+        } catch (IOException ex) {
+            log.warn("Unable to replay console spill file {}", replay, ex);
+        } finally {
+            if (!replay.delete())
+                log.debug("Unable to delete console spill file {}", replay);
+        }
+    }
+
+    private void write(String line) {
+        console.print(prefix);
+        console.println(line);
+        unflushed++;
+        flushIfDue(false);
+    }
+
+    private void flushIfDue(boolean idle) {
+        long now = System.currentTimeMillis();
+        if (unflushed > 0 && (idle || unflushed >= FLUSH_EVERY_LINES || now - lastFlush >= FLUSH_EVERY_MILLIS)) {
+            console.flush();
+            unflushed = 0;
+            lastFlush = now;
+        }
+    }
+}
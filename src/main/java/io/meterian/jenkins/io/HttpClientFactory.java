@@ -13,6 +13,8 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 
+import java.util.concurrent.TimeUnit;
+
 public class HttpClientFactory {
 
     public static interface Config {
@@ -29,14 +31,21 @@ public class HttpClientFactory {
 
     }
 
+    private static final long MAX_IDLE_TIME_IN_SECONDS = 30L;
+
     public HttpClient newHttpClient(Config config) {
-        final HttpClientConnectionManager connectionManager = newConnectionManager(config);
+        return newHttpClient(config, newConnectionManager(config));
+    }
+
+    public CloseableHttpClient newHttpClient(Config config, HttpClientConnectionManager connectionManager) {
         final RequestConfig requestConfig = newRequestConfig(config);
 
         final CloseableHttpClient httpClient = HttpClients.custom()
                 .setDefaultRequestConfig(requestConfig)
                 .setConnectionManager(connectionManager)
                 .setUserAgent(config.getHttpUserAgent())
+                .evictExpiredConnections()
+                .evictIdleConnections(MAX_IDLE_TIME_IN_SECONDS, TimeUnit.SECONDS)
                 .build();
 
         return httpClient;
@@ -57,7 +66,7 @@ public class HttpClientFactory {
         return requestConfig;
     }
 
-    private PoolingHttpClientConnectionManager newConnectionManager(Config config) {
+    public PoolingHttpClientConnectionManager newConnectionManager(Config config) {
         final Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
                 .register("https", SSLConnectionSocketFactory.getSocketFactory())
                 .register("http", PlainConnectionSocketFactory.getSocketFactory())
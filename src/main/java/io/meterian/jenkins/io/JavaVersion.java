@@ -0,0 +1,72 @@
+package io.meterian.jenkins.io;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The version of the JVM running the client on a node, as printed by
+ * <code>java -version</code>, so that only the options it understands are
+ * passed to it.
+ */
+public class JavaVersion {
+
+    public static final JavaVersion UNKNOWN = new JavaVersion(-1, -1);
+
+    // i.e. version "1.8.0_292", version "11.0.12" 2021-07-20, version "17"
+    private static final Pattern VERSION = Pattern.compile("version \"(1\\.)?(\\d+)[.\\d]*(?:_(\\d+))?[^\"]*\"");
+
+    private final int feature;
+    private final int update;
+
+    JavaVersion(int feature, int update) {
+        this.feature = feature;
+        this.update = update;
+    }
+
+    /**
+     * Parses the output of <code>java -version</code>, returning
+     * {@link #UNKNOWN} when no version is found
+     */
+    public static JavaVersion parse(String output) {
+        if (output == null)
+            return UNKNOWN;
+
+        Matcher matcher = VERSION.matcher(output);
+        if (!matcher.find())
+            return UNKNOWN;
+
+        int feature = Integer.parseInt(matcher.group(2));
+        int update = matcher.group(3) == null ? 0 : Integer.parseInt(matcher.group(3));
+        return new JavaVersion(feature, update);
+    }
+
+    public boolean isKnown() {
+        return feature > 0;
+    }
+
+    /**
+     * The feature release, i.e. 8 for 1.8.0_292 and 11 for 11.0.12, or -1
+     */
+    public int getFeature() {
+        return feature;
+    }
+
+    public boolean isAtLeast(int feature) {
+        return this.feature >= feature;
+    }
+
+    /**
+     * True when the JVM honours <code>-XX:ActiveProcessorCount</code>, added in
+     * 10 and backported to 8u191
+     */
+    public boolean supportsActiveProcessorCount() {
+        return feature >= 10 || (feature == 8 && update >= 191);
+    }
+
+    @Override
+    public String toString() {
+        if (!isKnown())
+            return "unknown";
+        return feature == 8 ? "1.8.0_" + update : String.valueOf(feature);
+    }
+}
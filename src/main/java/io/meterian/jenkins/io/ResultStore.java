@@ -0,0 +1,229 @@
+package io.meterian.jenkins.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import io.meterian.jenkins.core.Meterian;
+
+/**
+ * Keeps the results of the analyses in a folder, so that builds of the same
+ * commit, from the same or from other jobs, can reuse them.
+ *
+ * Results are looked up by repository, commit and manifest hash, and stored
+ * one per file as gzipped JSON, a few kilobytes each. The least recently used
+ * results are evicted when the folder grows over its maximum size, and
+ * results older than the maximum age are never returned and removed.
+ */
+public class ResultStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultStore.class);
+
+    public static final long DEFAULT_MAX_SIZE_IN_BYTES = 256L * 1024 * 1024;
+    public static final long DEFAULT_MAX_AGE_IN_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private static final String SUFFIX = ".json.gz";
+    private static final Gson GSON = new Gson();
+
+    public static class Entry {
+        public String key;
+        public long scannedAt;
+        public Meterian.Result result;
+    }
+
+    private final File folder;
+    private final long maxSizeInBytes;
+    private final long maxAgeInMillis;
+
+    public ResultStore(File folder) {
+        this(folder, DEFAULT_MAX_SIZE_IN_BYTES, DEFAULT_MAX_AGE_IN_MILLIS);
+    }
+
+    public ResultStore(File folder, long maxSizeInBytes, long maxAgeInMillis) {
+        this.folder = folder;
+        this.maxSizeInBytes = maxSizeInBytes;
+        this.maxAgeInMillis = maxAgeInMillis;
+    }
+
+    /**
+     * Builds the key of a result; the extra parts identify how the analysis
+     * was run, i.e. the client version and its arguments
+     */
+    public static String key(String repository, String commit, String manifestHash, String... extra) {
+        StringBuilder key = new StringBuilder()
+                .append(normalize(repository)).append('|')
+                .append(commit.toLowerCase(Locale.ROOT)).append('|')
+                .append(manifestHash);
+        for (String part : extra)
+            key.append('|').append(part);
+        return key.toString();
+    }
+
+    public Entry get(String key) {
+        File file = fileOf(key);
+        if (!file.exists())
+            return null;
+
+        long now = System.currentTimeMillis();
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(file.toPath())), StandardCharsets.UTF_8)) {
+            Entry entry = GSON.fromJson(reader, Entry.class);
+            if (entry == null || !key.equals(entry.key))
+                return null;
+
+            if (now - entry.scannedAt > maxAgeInMillis) {
+                delete(file);
+                return null;
+            }
+
+            file.setLastModified(now);
+            return entry;
+        } catch (IOException | JsonParseException ex) {
+            log.warn("Unable to read stored result {}, discarding it", file, ex);
+            delete(file);
+            return null;
+        }
+    }
+
+    public void put(String key, Meterian.Result result, long scannedAt) throws IOException {
+        Entry entry = new Entry();
+        entry.key = key;
+        entry.scannedAt = scannedAt;
+        entry.result = result;
+
+        Files.createDirectories(folder.toPath());
+        File file = fileOf(key);
+        File temp = File.createTempFile(file.getName(), ".part", folder);
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp.toPath()));
+                 Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                GSON.toJson(entry, writer);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            delete(temp);
+        }
+
+        evict();
+    }
+
+    /**
+     * Removes the expired results, then the least recently used ones until
+     * the store fits its maximum size
+     */
+    public synchronized void evict() {
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        long size = 0;
+        List<File> live = new ArrayList<>();
+        for (File file : files) {
+            if (now - file.lastModified() > maxAgeInMillis) {
+                delete(file);
+            } else {
+                live.add(file);
+                size += file.length();
+            }
+        }
+
+        if (size <= maxSizeInBytes)
+            return;
+
+        Collections.sort(live, Comparator.comparingLong(File::lastModified));
+        for (File file : live) {
+            if (size <= maxSizeInBytes)
+                break;
+            size -= file.length();
+            delete(file);
+        }
+    }
+
+    public String stats() {
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        long size = 0;
+        if (files != null)
+            for (File file : files)
+                size += file.length();
+
+        return String.format("results: %d, size: %d KB (max %d KB)",
+                files == null ? 0 : files.length, size / 1024, maxSizeInBytes / 1024);
+    }
+
+    private File fileOf(String key) {
+        return new File(folder, ClientDigest.hex(digest(key)) + SUFFIX);
+    }
+
+    private static byte[] digest(String key) {
+        return ClientDigest.newDigest().digest(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The same repository can be cloned with different URLs: credentials,
+     * protocols, the <code>.git</code> suffix and the case of the host are
+     * not relevant.
+     */
+    static String normalize(String repository) {
+        String url = repository.trim();
+        int scheme = url.indexOf("://");
+        if (scheme >= 0)
+            url = url.substring(scheme + 3);
+
+        int at = url.indexOf('@');
+        int slash = url.indexOf('/');
+        if (at >= 0 && (slash < 0 || at < slash))
+            url = url.substring(at + 1);
+
+        // scp-like syntax, i.e. git@github.com:org/repo.git
+        int colon = url.indexOf(':');
+        slash = url.indexOf('/');
+        if (colon >= 0 && (slash < 0 || colon < slash)) {
+            String port = url.substring(colon + 1, slash < 0 ? url.length() : slash);
+            url = port.matches("\\d+")
+                    ? url.substring(0, colon) + (slash < 0 ? "" : url.substring(slash))
+                    : url.substring(0, colon) + "/" + url.substring(colon + 1);
+        }
+
+        while (url.endsWith("/"))
+            url = url.substring(0, url.length() - 1);
+        if (url.endsWith(".git"))
+            url = url.substring(0, url.length() - 4);
+
+        slash = url.indexOf('/');
+        return slash < 0 ? url.toLowerCase(Locale.ROOT) : url.substring(0, slash).toLowerCase(Locale.ROOT) + url.substring(slash);
+    }
+
+    private static void delete(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException ex) {
+            log.debug("Unable to delete {}", file, ex);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.meterian.jenkins.io;
+
+import java.io.IOException;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The one {@link HttpClient} used by the whole plugin: its connection pool is
+ * shared by all the builds, so connections and TLS sessions are reused, and
+ * it's closed only when Jenkins shuts down.
+ */
+public class SharedHttpClient {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedHttpClient.class);
+
+    private static CloseableHttpClient client;
+    private static PoolingHttpClientConnectionManager connectionManager;
+
+    public static synchronized HttpClient get(HttpClientFactory.Config config) {
+        if (client == null) {
+            HttpClientFactory factory = new HttpClientFactory();
+            connectionManager = factory.newConnectionManager(config);
+            client = factory.newHttpClient(config, connectionManager);
+            log.info("Shared http client created, max {} connections", config.getHttpMaxTotalConnections());
+        } else if (log.isDebugEnabled()) {
+            log.debug("Shared http client pool: {}", stats());
+        }
+
+        return client;
+    }
+
+    public static synchronized PoolStats stats() {
+        return connectionManager == null ? new PoolStats(0, 0, 0, 0) : connectionManager.getTotalStats();
+    }
+
+    public static synchronized void shutdown() {
+        if (client == null)
+            return;
+
+        log.info("Closing shared http client, pool: {}", stats());
+        try {
+            client.close();
+        } catch (IOException ex) {
+            log.warn("Unable to close the shared http client", ex);
+        } finally {
+            client = null;
+            connectionManager = null;
+        }
+    }
+}
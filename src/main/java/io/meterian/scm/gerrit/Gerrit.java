@@ -183,6 +183,21 @@ public class Gerrit {
             return null;
     }
 
+    /**
+     * Identifies a change across the Gerrit servers, so that the analyses of
+     * its patchsets can supersede each other
+     */
+    public static String laneOf(EnvVars environment, GerritChange change) {
+        String server;
+        try {
+            URIish url = getGerritUrl(environment);
+            server = url == null ? "" : url.getHost();
+        } catch (Exception any) {
+            server = "";
+        }
+        return "gerrit:" + server + "/" + change.getChangeId();
+    }
+
     public static boolean isSupported(EnvVars environment) {
         try {
             return getGerritUrl(environment) != null;
@@ -0,0 +1,28 @@
+package com.meterian.common.system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class ShellTest {
+
+    @Test
+    public void shouldReturnTheExitValue() throws IOException {
+        Shell.Task task = new Shell().exec("sh", "-c", "exit 3");
+
+        assertEquals(3, task.waitFor(10));
+    }
+
+    @Test
+    public void shouldKillTheProcessOnTimeout() throws Exception {
+        long start = System.nanoTime();
+        Shell.Task task = new Shell().exec("sleep", "60");
+
+        assertEquals(-1, task.waitFor(1));
+        assertTrue(task.isTimedOut());
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+    }
+}
@@ -0,0 +1,121 @@
+package io.meterian.jenkins.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.meterian.jenkins.io.CgroupLimits;
+import io.meterian.jenkins.io.JavaVersion;
+
+public class ClientSizingTest {
+
+    private static final String HOST_16_GB_8_CPUS = "MemTotal:       16777216 kB\nMemFree:         1024 kB\n";
+
+    private static final JavaVersion JAVA_11 = JavaVersion.parse("openjdk version \"11.0.12\" 2021-07-20");
+
+    private final Map<String, String> files = new HashMap<>();
+
+    @Test
+    public void shouldReadTheLimitsOfCgroupsV2() throws IOException {
+        host();
+        files.put("/sys/fs/cgroup/memory.max", "4294967296\n");
+        files.put("/sys/fs/cgroup/cpu.max", "150000 100000\n");
+
+        CgroupLimits limits = limits();
+
+        assertTrue(limits.isContainerLimited());
+        assertEquals(4096L * 1024 * 1024, limits.getMemoryInBytes());
+        assertEquals(1.5, limits.getCpus(), 0.001);
+    }
+
+    @Test
+    public void shouldReadTheLimitsOfCgroupsV1() throws IOException {
+        host();
+        files.put("/sys/fs/cgroup/memory/memory.limit_in_bytes", "2147483648");
+        files.put("/sys/fs/cgroup/cpu/cpu.cfs_quota_us", "-1");
+        files.put("/sys/fs/cgroup/cpu/cpu.cfs_period_us", "100000");
+        files.put("/sys/fs/cgroup/cpuset/cpuset.cpus", "0-1,4");
+
+        CgroupLimits limits = limits();
+
+        assertEquals(2048L * 1024 * 1024, limits.getMemoryInBytes());
+        assertEquals(3, limits.getCpus(), 0.001);
+    }
+
+    @Test
+    public void shouldFallBackToTheHostWhenUnlimited() throws IOException {
+        host();
+        files.put("/sys/fs/cgroup/memory.max", "max");
+        files.put("/sys/fs/cgroup/cpu.max", "max 100000");
+
+        CgroupLimits limits = limits();
+
+        assertFalse(limits.isContainerLimited());
+        assertEquals(16L * 1024 * 1024 * 1024, limits.getMemoryInBytes());
+        assertEquals(8, limits.getCpus(), 0.001);
+    }
+
+    @Test
+    public void shouldShareTheContainerAmongTheRunningClients() throws IOException {
+        host();
+        files.put("/sys/fs/cgroup/memory.max", "8589934592");
+        files.put("/sys/fs/cgroup/cpu.max", "400000 100000");
+
+        ClientSizing alone = ClientSizing.of(limits(), 1, Collections.<String>emptyList(), JAVA_11);
+        ClientSizing shared = ClientSizing.of(limits(), 4, Collections.<String>emptyList(), JAVA_11);
+
+        assertEquals(Arrays.asList("-Xmx4096m", "-XX:ActiveProcessorCount=4", "-XX:+UseParallelGC"), alone.getJvmArgs());
+        assertEquals(Arrays.asList("-Xmx1024m", "-XX:ActiveProcessorCount=1", "-XX:+UseSerialGC"), shared.getJvmArgs());
+    }
+
+    @Test
+    public void shouldKeepTheConfiguredOptions() throws IOException {
+        host();
+        files.put("/sys/fs/cgroup/memory.max", "1073741824");
+
+        List<String> args = ClientSizing.of(limits(), 2, Arrays.asList("-Xmx2g", "-XX:+UseG1GC"), JAVA_11).getJvmArgs();
+
+        assertEquals(Arrays.asList("-XX:ActiveProcessorCount=4"), args);
+    }
+
+    @Test
+    public void shouldOnlyPassTheOptionsTheJvmKnows() throws IOException {
+        host();
+        files.put("/sys/fs/cgroup/memory.max", "8589934592");
+        files.put("/sys/fs/cgroup/cpu.max", "400000 100000");
+
+        List<String> old = ClientSizing.of(limits(), 1, Collections.<String>emptyList(), JavaVersion.parse("java version \"1.8.0_181\"")).getJvmArgs();
+        List<String> backported = ClientSizing.of(limits(), 1, Collections.<String>emptyList(), JavaVersion.parse("openjdk version \"1.8.0_292\"")).getJvmArgs();
+        List<String> unknown = ClientSizing.of(limits(), 1, Collections.<String>emptyList(), JavaVersion.UNKNOWN).getJvmArgs();
+
+        assertEquals(Arrays.asList("-Xmx4096m", "-XX:+UseParallelGC"), old);
+        assertEquals(Arrays.asList("-Xmx4096m", "-XX:ActiveProcessorCount=4", "-XX:+UseParallelGC"), backported);
+        assertEquals(Arrays.asList("-Xmx4096m", "-XX:+UseParallelGC"), unknown);
+    }
+
+    @Test
+    public void shouldNotSizeWhenNothingIsKnown() throws IOException {
+        assertTrue(ClientSizing.of(limits(), 1, Collections.<String>emptyList(), JAVA_11).getJvmArgs().isEmpty());
+    }
+
+    private void host() {
+        files.put("/proc/meminfo", HOST_16_GB_8_CPUS);
+        StringBuilder cpuinfo = new StringBuilder();
+        for (int i = 0; i < 8; i++)
+            cpuinfo.append("processor\t: ").append(i).append("\nmodel name\t: test\n\n");
+        files.put("/proc/cpuinfo", cpuinfo.toString());
+    }
+
+    private CgroupLimits limits() throws IOException {
+        return CgroupLimits.read(files::get);
+    }
+}
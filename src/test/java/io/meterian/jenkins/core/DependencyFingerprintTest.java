@@ -0,0 +1,139 @@
+package io.meterian.jenkins.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DependencyFingerprintTest {
+
+    private static final String POM =
+            "<project>\n" +
+            "  <modelVersion>4.0.0</modelVersion>\n" +
+            "  <artifactId>app</artifactId>\n" +
+            "  <description>An app</description>\n" +
+            "  <dependencies>\n" +
+            "    <dependency><groupId>junit</groupId><artifactId>junit</artifactId><version>4.12</version></dependency>\n" +
+            "    <dependency><groupId>com.google.code.gson</groupId><artifactId>gson</artifactId><version>2.8.5</version></dependency>\n" +
+            "  </dependencies>\n" +
+            "</project>\n";
+
+    private static final String POM_REFORMATTED =
+            "<?xml version=\"1.0\"?>\n" +
+            "<!-- reformatted -->\n" +
+            "<project><artifactId>app</artifactId><modelVersion>4.0.0</modelVersion>\n" +
+            "  <description>The same app, better described</description>\n" +
+            "  <dependencies>\n" +
+            "    <dependency>\n" +
+            "      <artifactId>gson</artifactId>\n" +
+            "      <groupId>com.google.code.gson</groupId>\n" +
+            "      <version>2.8.5</version>\n" +
+            "    </dependency>\n" +
+            "    <dependency><version>4.12</version><groupId>junit</groupId><artifactId>junit</artifactId></dependency>\n" +
+            "  </dependencies>\n" +
+            "</project>\n";
+
+    private final DependencyFingerprint fingerprint = new DependencyFingerprint();
+
+    private File tmp;
+
+    @Before
+    public void setup() throws IOException {
+        tmp = Files.createTempDirectory("meterian-fingerprint-").toFile();
+    }
+
+    @After
+    public void teardn() throws IOException {
+        FileUtils.deleteDirectory(tmp);
+    }
+
+    @Test
+    public void shouldIgnoreFormattingCommentsAndOrderInPoms() throws IOException {
+        write("pom.xml", POM);
+        String before = fingerprint.of(tmp);
+
+        write("pom.xml", POM_REFORMATTED);
+
+        assertEquals(before, fingerprint.of(tmp));
+    }
+
+    @Test
+    public void shouldChangeWhenAVersionChanges() throws IOException {
+        write("pom.xml", POM);
+        String before = fingerprint.of(tmp);
+
+        write("pom.xml", POM.replace("2.8.5", "2.8.6"));
+
+        assertNotEquals(before, fingerprint.of(tmp));
+    }
+
+    @Test
+    public void shouldOnlyConsiderTheDependenciesOfAPackageJson() throws IOException {
+        write("web/package.json", "{\"name\":\"web\",\"scripts\":{\"test\":\"jest\"},\"dependencies\":{\"react\":\"16.8.0\",\"lodash\":\"4.17.11\"}}");
+        String before = fingerprint.of(tmp);
+
+        write("web/package.json", "{\n  \"dependencies\": {\n    \"lodash\": \"4.17.11\",\n    \"react\": \"16.8.0\"\n  },\n  \"name\": \"web\",\n  \"scripts\": {\"test\": \"mocha\"}\n}");
+        assertEquals(before, fingerprint.of(tmp));
+
+        write("web/package.json", "{\"dependencies\":{\"react\":\"16.8.0\",\"lodash\":\"4.17.12\"}}");
+        assertNotEquals(before, fingerprint.of(tmp));
+    }
+
+    @Test
+    public void shouldIgnoreCommentsAndOrderOfRequirements() throws IOException {
+        write("requirements.txt", "# runtime\nrequests==2.21.0\n\nflask==1.0.2  # web\n");
+        String before = fingerprint.of(tmp);
+
+        write("requirements.txt", "flask==1.0.2\nrequests==2.21.0\n");
+
+        assertEquals(before, fingerprint.of(tmp));
+    }
+
+    @Test
+    public void shouldSkipBuildOutputsAndNonManifests() throws IOException {
+        write("pom.xml", POM);
+        String before = fingerprint.of(tmp);
+
+        write("target/classes/pom.xml", "<project/>");
+        write("node_modules/lodash/package.json", "{\"dependencies\":{}}");
+        write("src/main/java/App.java", "class App {}");
+
+        assertEquals(before, fingerprint.of(tmp));
+    }
+
+    @Test
+    public void shouldDependOnWhereManifestsAre() throws IOException {
+        write("a/pom.xml", POM);
+        String before = fingerprint.of(tmp);
+
+        FileUtils.deleteDirectory(new File(tmp, "a"));
+        write("b/pom.xml", POM);
+
+        assertNotNull(before);
+        assertNotEquals(before, fingerprint.of(tmp));
+    }
+
+    @Test
+    public void shouldHaveNoFingerprintWithoutManifests() throws IOException {
+        write("README.md", "hello");
+
+        assertNull(fingerprint.of(tmp));
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(tmp, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(UTF_8));
+    }
+}
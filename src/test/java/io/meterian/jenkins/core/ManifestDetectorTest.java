@@ -0,0 +1,73 @@
+package io.meterian.jenkins.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ManifestDetectorTest {
+
+    private final ManifestDetector detector = ManifestDetector.defaults();
+
+    @Test
+    public void shouldMatchManifestsByFileName() {
+        assertEquals("maven", detector.ecosystemOf("pom.xml"));
+        assertEquals("maven", detector.ecosystemOf("backend/core/pom.xml"));
+        assertEquals("npm", detector.ecosystemOf("web/package-lock.json"));
+        assertEquals("yarn", detector.ecosystemOf("web/yarn.lock"));
+        assertEquals("go", detector.ecosystemOf("go.sum"));
+        assertEquals("rust", detector.ecosystemOf("crates/a/Cargo.toml"));
+        assertEquals("php", detector.ecosystemOf("composer.lock"));
+        assertEquals("gradle", detector.ecosystemOf("app/build.gradle.kts"));
+        assertEquals("dotnet", detector.ecosystemOf("src\\App\\App.csproj"));
+    }
+
+    @Test
+    public void shouldMatchWildcards() {
+        assertEquals("python", detector.ecosystemOf("requirements.txt"));
+        assertEquals("python", detector.ecosystemOf("deps/requirements-dev.txt"));
+        assertEquals("ruby", detector.ecosystemOf("lib/meterian.gemspec"));
+        assertEquals("gradle", detector.ecosystemOf("gradle/libs.versions.toml"));
+    }
+
+    @Test
+    public void shouldNotMatchLookAlikes() {
+        assertNull(detector.ecosystemOf("docs/pom.xml.md"));
+        assertNull(detector.ecosystemOf("src/main/java/pom/Xml.java"));
+        assertNull(detector.ecosystemOf("my-package.json"));
+        assertNull(detector.ecosystemOf("App.csproj.user"));
+        assertNull(detector.ecosystemOf("/COMMIT_MSG"));
+    }
+
+    @Test
+    public void shouldAcceptAdditionalEcosystems() {
+        ManifestDetector custom = new ManifestDetector.Builder()
+                .addAll(ManifestDetector.defaults())
+                .add("swift", "Package.swift", "Package.resolved")
+                .add("conan", "conanfile*")
+                .build();
+
+        assertEquals("swift", custom.ecosystemOf("Package.resolved"));
+        assertEquals("conan", custom.ecosystemOf("native/conanfile.py"));
+        assertEquals("ruby", custom.ecosystemOf("x.gemspec"));
+        assertFalse(detector.isManifest("Package.swift"));
+    }
+
+    @Test
+    public void shouldFilterManyPathsKeepingTheirOrder() {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 50000; i++)
+            paths.add("src/main/java/module" + i + "/Source" + i + ".java");
+        paths.add("module7/pom.xml");
+        paths.add(0, "package.json");
+
+        assertEquals(Arrays.asList("package.json", "module7/pom.xml"), detector.manifests(paths));
+        assertTrue(detector.isManifest("Pipfile.lock"));
+    }
+}
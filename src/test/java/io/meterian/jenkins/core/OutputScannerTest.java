@@ -0,0 +1,136 @@
+package io.meterian.jenkins.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.meterian.jenkins.core.Meterian.Result;
+
+public class OutputScannerTest {
+
+    private final OutputScanner scanner = new OutputScanner(ClientOutputRules.defaults());
+    private final Result result = new Result();
+
+    @Test
+    public void shouldParseTheReportUrl() {
+        UUID pid = UUID.randomUUID();
+        String url = "https://www.meterian.com/projects/?pid=" + pid + "&branch=feature%2Fone&mode=eli";
+
+        scanner.scan("Full report available at: " + url, result);
+
+        assertEquals(pid, result.projectUUID);
+        assertEquals("feature/one", result.projectBranch);
+        assertEquals(URI.create(url), result.reportUrl);
+    }
+
+    @Test
+    public void shouldIgnoreUrlsNotFromMeterian() {
+        scanner.scan("See https://example.com/?pid=" + UUID.randomUUID() + "&branch=master", result);
+
+        assertNull(result.reportUrl);
+    }
+
+    @Test
+    public void shouldParseScoresAndOutcome() {
+        scanner.scan("- security:\t70\t(minimum: 90)", result);
+        scanner.scan("- stability:\t100\t(minimum: 80)", result);
+        scanner.scan("- licensing:\t99", result);
+        scanner.scan("Build unsuccessful!", result);
+        scanner.scan("Failed checks: [security, stability]", result);
+
+        assertEquals(Integer.valueOf(70), result.scores.get("security"));
+        assertEquals(Integer.valueOf(90), result.minimumScores.get("security"));
+        assertEquals(Integer.valueOf(100), result.scores.get("stability"));
+        assertEquals(Integer.valueOf(99), result.scores.get("licensing"));
+        assertFalse(result.minimumScores.containsKey("licensing"));
+        assertTrue(result.buildUnsuccessful);
+        assertEquals(Arrays.asList("security", "stability"), result.failedChecks);
+    }
+
+    @Test
+    public void shouldCollectAdvisoriesWithTheirSeverity() {
+        scanner.scan("com.fasterxml:jackson-databind 2.9.5 CVE-2019-12384 (HIGH), GHSA-6fpp-rgj9-8rwc", result);
+        scanner.scan("a note about XCVE-1 and CVE- alone", result);
+
+        assertEquals(Arrays.asList("CVE-2019-12384", "GHSA-6fpp-rgj9-8rwc"), new ArrayList<>(result.advisories.keySet()));
+        assertEquals("HIGH", result.advisories.get("CVE-2019-12384"));
+    }
+
+    @Test
+    public void shouldStopAtTheFirstFindingAtOrAboveTheThreshold() {
+        AtomicInteger stops = new AtomicInteger();
+        List<OutputScanner.Rule> rules = new ArrayList<>(ClientOutputRules.defaults());
+        rules.add(new ClientOutputRules.FailFastRule(Severity.HIGH, stops::incrementAndGet));
+        OutputScanner failFast = new OutputScanner(rules);
+
+        failFast.scan("lodash 4.17.4 CVE-2018-3721 (MEDIUM)", result);
+        assertNull(result.blockingFinding);
+
+        failFast.scan("lodash 4.17.4 CVE-2019-10744 (critical)", result);
+        failFast.scan("lodash 4.17.4 CVE-2020-8203 (HIGH)", result);
+
+        assertEquals(1, stops.get());
+        assertEquals("CVE-2019-10744 (CRITICAL): lodash 4.17.4 CVE-2019-10744 (critical)", result.blockingFinding);
+    }
+
+    @Test
+    public void shouldRecordEachErrorLineOnce() {
+        scanner.scan("ERROR Unexpected Exception: boom", result);
+        scanner.scan("all good", result);
+
+        assertEquals(Collections.singletonList("ERROR Unexpected Exception: boom"), result.errors);
+    }
+
+    @Test
+    public void shouldMatchOverlappingKeywords() {
+        List<String> found = new ArrayList<>();
+        OutputScanner.Rule rule = new OutputScanner.Rule() {
+            @Override
+            public List<String> keywords() {
+                return Arrays.asList("he", "she", "hers");
+            }
+
+            @Override
+            public void matched(String keyword, String line, int start, Result result) {
+                found.add(keyword + "@" + start);
+            }
+        };
+
+        new OutputScanner(Collections.singletonList(rule)).scan("ushers \u00e8 she", result);
+
+        assertEquals(Arrays.asList("she@1", "he@2", "hers@2", "she@9", "he@10"), found);
+    }
+
+    @Test
+    public void shouldMatchKeywordsAfterTheFirstPossibleStart() {
+        List<String> found = new ArrayList<>();
+        OutputScanner.Rule rule = new OutputScanner.Rule() {
+            @Override
+            public List<String> keywords() {
+                return Arrays.asList("x", "abc", "id=");
+            }
+
+            @Override
+            public void matched(String keyword, String line, int start, Result result) {
+                found.add(keyword + "@" + start);
+            }
+        };
+        OutputScanner scanner = new OutputScanner(Collections.singletonList(rule));
+
+        scanner.scan("nothing to see", result);
+        scanner.scan("=ab abx abc id=1", result);
+
+        assertEquals(Arrays.asList("x@6", "abc@8", "id=@12"), found);
+    }
+}
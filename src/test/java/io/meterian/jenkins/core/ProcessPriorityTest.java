@@ -0,0 +1,82 @@
+package io.meterian.jenkins.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ProcessPriorityTest {
+
+    private final Set<String> tools = new HashSet<>(Arrays.asList("nice", "ionice", "systemd-run"));
+
+    @Test
+    public void shouldPrefixTheClientWithTheConfiguredTools() throws IOException {
+        ProcessPriority priority = ProcessPriority.of(10, "best-effort", "meterian.slice");
+
+        assertEquals(Arrays.asList(
+                "/usr/bin/systemd-run", "--user", "--scope", "--quiet", "--slice=meterian.slice",
+                "/usr/bin/nice", "-n", "10",
+                "/usr/bin/ionice", "-c", "2", "-n", "7"), priority.prefix(this::locate));
+    }
+
+    @Test
+    public void shouldSkipTheToolsMissingOnTheNode() throws IOException {
+        tools.remove("ionice");
+        tools.remove("systemd-run");
+
+        assertEquals(Arrays.asList("/usr/bin/nice", "-n", "19"), ProcessPriority.LOW.orElse(ProcessPriority.of(null, null, "meterian.slice")).prefix(this::locate));
+    }
+
+    @Test
+    public void shouldSkipTheSliceWhenSystemdCannotOpenAUserScope() throws IOException {
+        ProcessPriority priority = ProcessPriority.of(10, null, "meterian.slice");
+
+        List<String> prefix = priority.prefix(new ProcessPriority.Locator() {
+            @Override
+            public String locate(String tool) {
+                return ProcessPriorityTest.this.locate(tool);
+            }
+
+            @Override
+            public boolean works(String... command) {
+                return !command[0].endsWith("systemd-run");
+            }
+        });
+
+        assertEquals(Arrays.asList("/usr/bin/nice", "-n", "10"), prefix);
+    }
+
+    @Test
+    public void shouldFallBackToTheDefaultsForTheValuesNotSet() {
+        ProcessPriority job = ProcessPriority.of(5, "", null);
+        ProcessPriority global = ProcessPriority.of(15, "idle", "meterian.slice");
+
+        ProcessPriority effective = job.orElse(global);
+
+        assertEquals(Integer.valueOf(5), effective.getNiceness());
+        assertEquals(ProcessPriority.IoClass.IDLE, effective.getIoClass());
+        assertEquals("meterian.slice", effective.getSlice());
+    }
+
+    @Test
+    public void shouldNeverRaiseThePriority() throws IOException {
+        assertEquals(Integer.valueOf(0), ProcessPriority.of(-5, null, null).getNiceness());
+        assertEquals(Integer.valueOf(19), ProcessPriority.of(40, null, null).getNiceness());
+        assertTrue(ProcessPriority.of(null, "realtime", " ").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectSlicesThatAreNotNames() {
+        ProcessPriority.of(null, null, "meterian.slice; rm -rf /");
+    }
+
+    private String locate(String tool) {
+        return tools.contains(tool) ? "/usr/bin/" + tool : null;
+    }
+}
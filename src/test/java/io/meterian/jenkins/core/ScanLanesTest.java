@@ -0,0 +1,77 @@
+package io.meterian.jenkins.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ScanLanesTest {
+
+    private final ScanLanes lanes = new ScanLanes();
+
+    @Test
+    public void shouldStopTheAnalysisOfAnOlderRevision() {
+        AtomicInteger stops = new AtomicInteger();
+        ScanLanes.Ticket first = lanes.enter("gerrit:42", 1, stops::incrementAndGet);
+        ScanLanes.Ticket second = lanes.enter("gerrit:42", 2, () -> {});
+
+        assertTrue(first.isSuperseded());
+        assertEquals(Long.valueOf(2), first.getSupersededBy());
+        assertEquals(1, stops.get());
+        assertFalse(second.isSuperseded());
+
+        first.close();
+        assertEquals(1, lanes.size());
+        second.close();
+        assertEquals(0, lanes.size());
+    }
+
+    @Test
+    public void shouldSupersedeAtOnceAnAnalysisAlreadyObsolete() {
+        AtomicInteger stops = new AtomicInteger();
+        ScanLanes.Ticket newer = lanes.enter("gerrit:42", 3, stops::incrementAndGet);
+        ScanLanes.Ticket older = lanes.enter("gerrit:42", 2, stops::incrementAndGet);
+
+        assertTrue(older.isSuperseded());
+        assertFalse(newer.isSuperseded());
+        assertEquals(0, stops.get());
+    }
+
+    @Test
+    public void shouldRunAnalysesOfTheSameRevisionSideBySide() {
+        AtomicInteger stops = new AtomicInteger();
+        ScanLanes.Ticket first = lanes.enter("branch:app/main", 5, stops::incrementAndGet);
+        ScanLanes.Ticket second = lanes.enter("branch:app/main", 5, stops::incrementAndGet);
+
+        assertFalse(first.isSuperseded());
+        assertFalse(second.isSuperseded());
+        assertEquals(0, stops.get());
+
+        first.close();
+        assertEquals(1, lanes.size());
+
+        ScanLanes.Ticket newer = lanes.enter("branch:app/main", 6, () -> {});
+        assertTrue(second.isSuperseded());
+        assertEquals(1, stops.get());
+        assertFalse(newer.isSuperseded());
+
+        second.close();
+        newer.close();
+        assertEquals(0, lanes.size());
+    }
+
+    @Test
+    public void shouldKeepLanesIndependent() {
+        ScanLanes.Ticket change = lanes.enter("gerrit:42", 1, () -> {});
+        ScanLanes.Ticket other = lanes.enter("gerrit:43", 7, () -> {});
+        ScanLanes.Ticket branch = lanes.enter("branch:app/main", 100, () -> {});
+
+        assertFalse(change.isSuperseded());
+        assertFalse(other.isSuperseded());
+        assertFalse(branch.isSuperseded());
+        assertEquals(3, lanes.size());
+    }
+}
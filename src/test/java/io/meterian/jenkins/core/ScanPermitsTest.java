@@ -0,0 +1,149 @@
+package io.meterian.jenkins.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.meterian.jenkins.core.ScanPermits.Permit;
+import io.meterian.jenkins.core.ScanPermits.Priority;
+
+public class ScanPermitsTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void teardn() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldLimitClientsPerNode() throws Exception {
+        ScanPermits permits = new ScanPermits(0, 1);
+
+        Permit first = permits.acquire("agent-1", Priority.NORMAL);
+        assertNull(permits.tryAcquire("agent-1"));
+        Permit other = permits.tryAcquire("agent-2");
+        assertNotNull(other);
+
+        first.close();
+        assertNotNull(permits.tryAcquire("agent-1"));
+    }
+
+    @Test
+    public void shouldLimitClientsGlobally() throws Exception {
+        ScanPermits permits = new ScanPermits(2, 0);
+
+        permits.acquire("agent-1", Priority.NORMAL);
+        Permit second = permits.acquire("agent-2", Priority.NORMAL);
+        assertNull(permits.tryAcquire("agent-3"));
+
+        second.close();
+        second.close();
+        assertNotNull(permits.tryAcquire("agent-3"));
+        assertNull(permits.tryAcquire("agent-4"));
+    }
+
+    @Test
+    public void shouldServeHigherPrioritiesFirst() throws Exception {
+        ScanPermits permits = new ScanPermits(1, 0);
+        Permit busy = permits.acquire("agent-1", Priority.NORMAL);
+
+        List<Priority> order = new CopyOnWriteArrayList<>();
+        Future<?> nightly = waitFor(permits, "agent-1", Priority.BACKGROUND, order);
+        awaitQueued(permits, 1);
+        Future<?> normal = waitFor(permits, "agent-1", Priority.NORMAL, order);
+        awaitQueued(permits, 2);
+        Future<?> gerrit = waitFor(permits, "agent-1", Priority.INTERACTIVE, order);
+        awaitQueued(permits, 3);
+
+        busy.close();
+        nightly.get(5, TimeUnit.SECONDS);
+        normal.get(5, TimeUnit.SECONDS);
+        gerrit.get(5, TimeUnit.SECONDS);
+
+        assertEquals(Priority.INTERACTIVE, order.get(0));
+        assertEquals(Priority.NORMAL, order.get(1));
+        assertEquals(Priority.BACKGROUND, order.get(2));
+        assertTrue(permits.stats().contains("running: 0"));
+    }
+
+    @Test
+    public void shouldNotLetAFullNodeHoldTheOthers() throws Exception {
+        ScanPermits permits = new ScanPermits(0, 1);
+        permits.acquire("agent-1", Priority.NORMAL);
+
+        List<Priority> order = new CopyOnWriteArrayList<>();
+        Future<?> blocked = waitFor(permits, "agent-1", Priority.INTERACTIVE, order);
+        awaitQueued(permits, 1);
+
+        waitFor(permits, "agent-2", Priority.BACKGROUND, order).get(5, TimeUnit.SECONDS);
+        assertFalse(blocked.isDone());
+    }
+
+    @Test
+    public void shouldGiveUpWaitingWhenInterrupted() throws Exception {
+        ScanPermits permits = new ScanPermits(1, 0);
+        Permit busy = permits.acquire("agent-1", Priority.NORMAL);
+
+        Future<?> waiting = waitFor(permits, "agent-1", Priority.NORMAL, new CopyOnWriteArrayList<>());
+        awaitQueued(permits, 1);
+        waiting.cancel(true);
+        awaitQueued(permits, 0);
+
+        busy.close();
+        assertNotNull(permits.tryAcquire("agent-1"));
+    }
+
+    @Test
+    public void shouldWaitWithoutHoldingAThread() throws Exception {
+        ScanPermits permits = new ScanPermits(0, 1);
+        Permit busy = permits.acquire("agent-1", Priority.NORMAL);
+
+        CompletableFuture<Permit> queued = permits.acquireAsync("agent-1", Priority.NORMAL);
+        CompletableFuture<Permit> abandoned = permits.acquireAsync("agent-1", Priority.INTERACTIVE);
+        assertFalse(queued.isDone());
+        assertEquals(2, permits.getQueued());
+
+        permits.abandon(abandoned);
+        assertTrue(abandoned.isCancelled());
+        assertEquals(1, permits.getQueued());
+
+        busy.close();
+        Permit granted = queued.get(5, TimeUnit.SECONDS);
+        assertEquals(1, permits.getRunning("agent-1"));
+
+        permits.abandon(queued);
+        assertEquals(0, permits.getRunning("agent-1"));
+        granted.close();
+        assertNotNull(permits.tryAcquire("agent-1"));
+    }
+
+    private Future<?> waitFor(ScanPermits permits, String node, Priority priority, List<Priority> order) {
+        return executor.submit(() -> {
+            try (Permit permit = permits.acquire(node, priority)) {
+                order.add(priority);
+            }
+            return null;
+        });
+    }
+
+    private static void awaitQueued(ScanPermits permits, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (permits.getQueued() != expected && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(expected, permits.getQueued());
+    }
+}
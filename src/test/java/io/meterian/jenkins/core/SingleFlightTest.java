@@ -0,0 +1,89 @@
+package io.meterian.jenkins.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void teardn() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldRunTheWorkOnceForConcurrentCallers() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> callers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            callers.add(executor.submit(() -> {
+                String value = flights.join("repo@abc");
+                if (value != null)
+                    return value;
+
+                runs.incrementAndGet();
+                started.countDown();
+                release.await();
+                flights.land("repo@abc", "result");
+                return "result";
+            }));
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertTrue(flights.isInFlight("repo@abc"));
+        release.countDown();
+
+        for (Future<String> caller : callers)
+            assertEquals("result", caller.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    public void shouldLetAWaitingCallerTakeOverAFailedLeader() throws Exception {
+        assertNull(flights.join("repo@abc"));
+
+        Future<String> follower = executor.submit(() -> {
+            String value = flights.join("repo@abc");
+            if (value != null)
+                return "joined " + value;
+
+            flights.land("repo@abc", "mine");
+            return "led";
+        });
+
+        Thread.sleep(100);
+        assertFalse(follower.isDone());
+        flights.land("repo@abc", null);
+
+        assertEquals("led", follower.get(5, TimeUnit.SECONDS));
+        assertFalse(flights.isInFlight("repo@abc"));
+    }
+
+    @Test
+    public void shouldNotCoalesceDifferentKeys() throws Exception {
+        assertNull(flights.join("repo@abc"));
+        assertNull(flights.join("repo@def"));
+        assertEquals(2, flights.size());
+    }
+}
@@ -0,0 +1,92 @@
+package io.meterian.jenkins.core.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.Enumeration;
+
+import org.junit.Test;
+
+public class ReportParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void shouldReadScoresAndFindingsPerManifest() throws IOException {
+        String json = "{"
+                + "\"project\": \"p1\", \"branch\": \"master\", \"unknown\": {\"a\": [1, 2, {\"b\": null}]},"
+                + "\"security\": {\"score\": 70, \"assessments\": ["
+                + "  {\"language\": \"java\", \"reports\": ["
+                + "    {\"advices\": [{\"id\": \"a1\", \"cve\": \"CVE-2019-12384\", \"severity\": \"HIGH\", \"description\": \"long text\"}],"
+                + "     \"dependency\": {\"name\": \"com.fasterxml.jackson.core:jackson-databind\", \"version\": \"2.9.5\"}}"
+                + "  ]}"
+                + "]},"
+                + "\"stability\": {\"score\": 100.0, \"assessments\": [{\"language\": \"java\", \"reports\": []}]},"
+                + "\"licensing\": \"not an object\""
+                + "}";
+
+        MeterianReport report = new ReportParser().parse(stream(json));
+
+        assertEquals("p1", report.getProject());
+        assertEquals("master", report.getBranch());
+        assertEquals(Integer.valueOf(70), report.getScores().get("security"));
+        assertEquals(Integer.valueOf(100), report.getScores().get("stability"));
+        assertEquals(1, report.getManifests().size());
+
+        ManifestReport manifest = report.getManifests().get(0);
+        assertEquals("java", manifest.getLanguage());
+        assertEquals(1, manifest.getFindings().size());
+
+        Finding finding = manifest.getFindings().get(0);
+        assertEquals("security", finding.getCategory());
+        assertEquals("com.fasterxml.jackson.core:jackson-databind", finding.getDependency());
+        assertEquals("2.9.5", finding.getVersion());
+        assertEquals("CVE-2019-12384", finding.getCve());
+        assertEquals("HIGH", finding.getSeverity());
+        assertFalse(report.isTruncated());
+    }
+
+    @Test
+    public void shouldKeepOnlyUpToTheMaximumFindingsOfALargeReport() throws IOException {
+        int advices = 50000;
+        InputStream json = new SequenceInputStream(new Enumeration<InputStream>() {
+            int count = -1;
+
+            @Override
+            public boolean hasMoreElements() {
+                return count <= advices;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                count++;
+                if (count == 0)
+                    return stream("{\"security\": {\"assessments\": [{\"language\": \"nodejs\", \"reports\": [{\"advices\": [");
+                if (count > advices)
+                    return stream("]}]}]}}");
+                return stream((count > 1 ? "," : "") + "{\"id\": \"a" + count + "\", \"severity\": \"LOW\"}");
+            }
+        });
+
+        MeterianReport report = new ReportParser(100).parse(json);
+
+        assertEquals(advices, report.getFindingsCount());
+        assertEquals(100, report.getManifests().get(0).getFindings().size());
+        assertTrue(report.isTruncated());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectAReportThatIsNotAnObject() throws IOException {
+        new ReportParser().parse(stream("[1, 2, 3]"));
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,83 @@
+package io.meterian.jenkins.glue.executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitChangesTest {
+
+    private File tmp;
+    private Git git;
+
+    @Before
+    public void setup() throws Exception {
+        tmp = Files.createTempDirectory("meterian-git-").toFile();
+        git = Git.init().setDirectory(tmp).call();
+    }
+
+    @After
+    public void teardn() throws IOException {
+        git.close();
+        FileUtils.deleteDirectory(tmp);
+    }
+
+    @Test
+    public void shouldListTheFilesChangedSinceACommit() throws Exception {
+        write("pom.xml", "<project/>");
+        write("src/App.java", "class App {}");
+        String base = commit();
+
+        write("src/App.java", "class App { }");
+        write("web/package.json", "{}");
+        String head = commit();
+
+        GitChanges changes = GitChanges.since(new File(tmp, "src"), base);
+
+        assertEquals(head, changes.getHead());
+        assertEquals(new TreeSet<>(Arrays.asList("src/App.java", "web/package.json")), changes.getPaths());
+    }
+
+    @Test
+    public void shouldReportNoChangesOnTheSameCommit() throws Exception {
+        write("pom.xml", "<project/>");
+        String head = commit();
+
+        assertTrue(GitChanges.since(tmp, head).getPaths().isEmpty());
+    }
+
+    @Test
+    public void shouldNotKnowTheChangesWhenTheBaseIsMissing() throws Exception {
+        write("pom.xml", "<project/>");
+        String head = commit();
+
+        GitChanges changes = GitChanges.since(tmp, "0123456789012345678901234567890123456789");
+
+        assertEquals(head, changes.getHead());
+        assertNull(changes.getPaths());
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(tmp, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(UTF_8));
+    }
+
+    private String commit() throws Exception {
+        git.add().addFilepattern(".").call();
+        return git.commit().setMessage("test").setAuthor("test", "test@example.com").setCommitter("test", "test@example.com").call().name();
+    }
+}
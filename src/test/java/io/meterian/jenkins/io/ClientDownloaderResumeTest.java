@@ -0,0 +1,215 @@
+package io.meterian.jenkins.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.meterian.test_management.TestManagement;
+
+public class ClientDownloaderResumeTest {
+
+    private static final String ETAG = "\"abc123\"";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final TestManagement testManagement = new TestManagement();
+
+    private File tmp;
+    private byte[] jar;
+    private ServerSocket server;
+    private CloseableHttpClient httpClient;
+
+    private volatile int truncateAfter = -1;
+    private volatile String etag = ETAG;
+    private final List<String> ranges = new ArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        tmp = Files.createTempDirectory("meterian-downloader-").toFile();
+        jar = newJar();
+
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread serverThread = new Thread(this::serve, "client-server-stand-in");
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        httpClient = HttpClients.custom()
+                .setDefaultRequestConfig(RequestConfig.custom().setSocketTimeout(10000).build())
+                .build();
+    }
+
+    @After
+    public void teardown() throws IOException {
+        httpClient.close();
+        server.close();
+        FileUtils.deleteDirectory(tmp);
+    }
+
+    @Test
+    public void shouldStoreTheDigestComputedWhileDownloading() throws IOException {
+        File client = newDownloader().load();
+
+        assertArrayEquals(jar, Files.readAllBytes(client.toPath()));
+        assertEquals(ClientDigest.compute(client), ClientDigest.of(client));
+        assertTrue(ClientDigest.verify(client));
+    }
+
+    @Test
+    public void shouldResumeAnInterruptedDownloadWithARangeRequest() throws IOException {
+        truncateAfter = jar.length / 3;
+
+        File client = newDownloader().load();
+
+        assertArrayEquals(jar, Files.readAllBytes(client.toPath()));
+        assertEquals(1, ranges.size());
+        assertEquals("bytes=" + (jar.length / 3) + "-", ranges.get(0));
+        assertFalse(new File(tmp, ClientDownloader.JAR_FILENAME + ".part").exists());
+    }
+
+    @Test
+    public void shouldStartOverAnInterruptedDownloadWithoutAnEtag() throws IOException {
+        etag = null;
+        truncateAfter = jar.length / 3;
+
+        File client = newDownloader().load();
+
+        assertArrayEquals(jar, Files.readAllBytes(client.toPath()));
+        assertTrue(ranges.isEmpty());
+        assertFalse(new File(tmp, ClientDownloader.JAR_FILENAME + ".etag").exists());
+        assertFalse(new File(tmp, ClientDownloader.JAR_FILENAME + ".etag.part").exists());
+    }
+
+    @Test
+    public void shouldDownloadAgainWhenTheCachedClientIsDamaged() throws IOException {
+        File client = newDownloader().load();
+        try (RandomAccessFile file = new RandomAccessFile(client, "rw")) {
+            file.seek(file.length() - 30);
+            file.write(0x42);
+        }
+        assertFalse(ClientDigest.verify(client));
+
+        ClientDownloader.resetValidations();
+        client = newDownloader().load();
+
+        assertArrayEquals(jar, Files.readAllBytes(client.toPath()));
+        assertTrue(ClientDigest.verify(client));
+    }
+
+    @Test
+    public void shouldNotTrustTheDigestOfAReplacedJar() throws IOException {
+        File client = newDownloader().load();
+        String digest = ClientDigest.of(client);
+
+        Files.write(client.toPath(), newJar(10));
+
+        assertEquals(ClientDigest.compute(client), ClientDigest.of(client));
+        assertFalse(digest.equals(ClientDigest.of(client)));
+    }
+
+    private ClientDownloader newDownloader() {
+        String baseUrl = "http://127.0.0.1:" + server.getLocalPort();
+        return new ClientDownloader(httpClient, baseUrl, testManagement.nullPrintStream(), 60, tmp);
+    }
+
+    private void serve() {
+        while (!server.isClosed()) {
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(10000);
+                serve(socket);
+            } catch (IOException whenClosingOrTruncating) {
+                // a truncated response is delivered by dropping the connection
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+        String method = in.readLine().split(" ")[0];
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            int pos = line.indexOf(':');
+            headers.put(line.substring(0, pos).trim().toLowerCase(), line.substring(pos + 1).trim());
+        }
+
+        OutputStream out = socket.getOutputStream();
+        if ("HEAD".equals(method)) {
+            out.write(("HTTP/1.1 200 OK\r\n" + etagHeader() + "Content-Length: " + jar.length + "\r\nConnection: close\r\n\r\n").getBytes(UTF_8));
+            out.flush();
+            return;
+        }
+
+        String range = headers.get("range");
+        int start = 0;
+        String status = "200 OK";
+        String extra = "";
+        if (range != null && etag != null && etag.equals(headers.get("if-range"))) {
+            ranges.add(range);
+            start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            status = "206 Partial Content";
+            extra = "Content-Range: bytes " + start + "-" + (jar.length - 1) + "/" + jar.length + "\r\n";
+        }
+
+        int end = jar.length;
+        if (truncateAfter > 0) {
+            end = truncateAfter;
+            truncateAfter = -1;
+        }
+
+        out.write(("HTTP/1.1 " + status + "\r\n" + etagHeader() + extra
+                + "Content-Length: " + (jar.length - start) + "\r\nConnection: close\r\n\r\n").getBytes(UTF_8));
+        out.write(jar, start, end - start);
+        out.flush();
+    }
+
+    private String etagHeader() {
+        return etag == null ? "" : "ETag: " + etag + "\r\n";
+    }
+
+    private byte[] newJar() throws IOException {
+        return newJar(20);
+    }
+
+    private byte[] newJar(int entries) throws IOException {
+        Random random = new Random(42);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(bytes)) {
+            for (int i = 0; i < entries; i++) {
+                out.putNextEntry(new JarEntry("com/meterian/Class" + i + ".class"));
+                byte[] data = new byte[8 * 1024];
+                random.nextBytes(data);
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
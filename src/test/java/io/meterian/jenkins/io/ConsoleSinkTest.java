@@ -0,0 +1,88 @@
+package io.meterian.jenkins.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ConsoleSinkTest {
+
+    @Test
+    public void shouldWriteAllLinesWithThePrefix() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (ConsoleSink sink = new ConsoleSink(new PrintStream(output, true, "UTF-8"), "[meterian] ")) {
+            sink.println("one");
+            sink.println("two");
+        }
+
+        assertEquals(Arrays.asList("[meterian] one", "[meterian] two"), lines(output));
+    }
+
+    // the console is stuck until all the lines are produced, so the producer
+    // can complete only by spilling them
+    @Test
+    public void shouldSpillAndKeepTheOrderWhenTheConsoleIsStuck() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CountDownLatch release = new CountDownLatch(1);
+        PrintStream stuckConsole = new PrintStream(new StuckOutputStream(output, release), false, "UTF-8");
+
+        List<String> expected = new ArrayList<>();
+        ConsoleSink sink = new ConsoleSink(stuckConsole, "> ", 4);
+        CountDownLatch produced = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 200; i++)
+                sink.println("line " + i);
+            produced.countDown();
+        });
+        producer.setDaemon(true);
+        producer.start();
+        for (int i = 0; i < 200; i++)
+            expected.add("> line " + i);
+
+        try {
+            assertTrue("producer blocked by the console", produced.await(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+        int spilled = sink.getSpilledLines();
+        sink.close();
+
+        assertTrue(spilled > 0);
+        assertEquals(expected, lines(output));
+    }
+
+    private static List<String> lines(ByteArrayOutputStream output) throws IOException {
+        return Arrays.asList(output.toString("UTF-8").split(System.lineSeparator()));
+    }
+
+    private static class StuckOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final CountDownLatch release;
+
+        StuckOutputStream(OutputStream target, CountDownLatch release) {
+            this.target = target;
+            this.release = release;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            target.write(b);
+        }
+    }
+}